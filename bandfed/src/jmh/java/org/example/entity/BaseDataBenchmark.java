@@ -0,0 +1,49 @@
+package org.example.entity;
+
+import org.example.entity.dto.Message;
+import org.example.entity.vo.response.MessageVO;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实体到视图对象的转换，单个对象以及一页历史消息
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BaseDataBenchmark {
+
+    private Message message;
+
+    private List<Message> page;
+
+    @Setup
+    public void setup() {
+        message = message(1);
+        page = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            page.add(message(i));
+        }
+    }
+
+    @Benchmark
+    public MessageVO asViewObject() {
+        return message.asViewObject(MessageVO.class);
+    }
+
+    @Benchmark
+    public List<MessageVO> asViewObjectList() {
+        return message.asViewObjectList(page, MessageVO.class);
+    }
+
+    private static Message message(long id) {
+        return new Message(id, 4294967298L, id, 1, 2, "private", "hello " + id, LocalDateTime.now());
+    }
+}
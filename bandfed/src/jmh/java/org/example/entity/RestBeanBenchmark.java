@@ -0,0 +1,60 @@
+package org.example.entity;
+
+import org.example.entity.vo.response.AuthorizeVO;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RestBean 编码：字符串、UTF-8 字节和直接写入输出流，分别对应不带数据的常量响应和登录成功响应
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestBeanBenchmark {
+
+    private RestBean<Void> unauthorized;
+
+    private RestBean<AuthorizeVO> login;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+    @Setup
+    public void setup() {
+        unauthorized = RestBean.unauthorized("Full authentication is required to access this resource");
+        AuthorizeVO vo = new AuthorizeVO();
+        vo.setUsername("bench");
+        vo.setRole("user");
+        vo.setToken("eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.eyJpZCI6MX0.signature");
+        vo.setExpire(new Date());
+        login = RestBean.success(vo);
+    }
+
+    @Benchmark
+    public String unauthorizedString() {
+        return unauthorized.asJsonString();
+    }
+
+    @Benchmark
+    public byte[] unauthorizedBytes() {
+        return unauthorized.asJsonBytes();
+    }
+
+    @Benchmark
+    public String loginString() {
+        return login.asJsonString();
+    }
+
+    @Benchmark
+    public int loginWriteTo() throws IOException {
+        out.reset();
+        login.writeTo(out);
+        return out.size();
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.entity.dto;
+
+import com.alibaba.fastjson2.JSON;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.example.netty.codec.JsonChatCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站 ChatMessage 的 JSON 解析：fastjson2 直接解析 UTF-8 字节、先转成 String 再解析，以及 Jackson 作为对照；
+ * codec 开头的方法从直接内存中的帧解码，对应服务端实际收到的帧
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMessageParseBenchmark {
+
+    private static final String JSON_TEXT = """
+            {"type":"private","targetUserId":2,"content":"你好，这是一条用于基准测试的消息 hello"}\
+            """;
+
+    private final byte[] bytes = JSON_TEXT.getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final JsonChatCodec codec = new JsonChatCodec();
+
+    private ByteBuf direct;
+
+    @Setup
+    public void setup() {
+        direct = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        direct.release();
+    }
+
+    @Benchmark
+    public ChatMessage fastjsonBytes() {
+        return JSON.parseObject(bytes, ChatMessage.class);
+    }
+
+    @Benchmark
+    public ChatMessage fastjsonString() {
+        return JSON.parseObject(new String(bytes, StandardCharsets.UTF_8), ChatMessage.class);
+    }
+
+    @Benchmark
+    public ChatMessage jacksonBytes() throws IOException {
+        return mapper.readValue(bytes, ChatMessage.class);
+    }
+
+    @Benchmark
+    public ChatMessage codecDirect() {
+        return codec.decode(new TextWebSocketFrame(direct.duplicate()));
+    }
+
+    @Benchmark
+    public ChatMessage frameText() {
+        // 旧的解码方式：先把整帧解码成 String
+        return JSON.parseObject(new TextWebSocketFrame(direct.duplicate()).text(), ChatMessage.class);
+    }
+}
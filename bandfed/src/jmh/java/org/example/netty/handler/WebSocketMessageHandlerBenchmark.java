@@ -0,0 +1,116 @@
+package org.example.netty.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import org.example.cluster.ClusterRouter;
+import org.example.netty.NettyCounters;
+import org.example.netty.codec.ChatFrameCodec;
+import org.example.netty.session.RoomRegistry;
+import org.example.netty.session.SessionRegistry;
+import org.example.service.DeliveryService;
+import org.example.service.InboxService;
+import org.example.service.MessageService;
+import org.example.service.PresenceService;
+import org.example.service.RoomService;
+import org.example.utils.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息路由：JSON 帧经 ChatFrameCodec 解码、WebSocketMessageHandler 处理，再编码写给接收方。
+ * 持久化、离线收件箱和会话序号换成立即返回的桩，测得的是 Netty 线程上的路由开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketMessageHandlerBenchmark {
+
+    private static final byte[] PRIVATE = """
+            {"type":"private","targetUserId":2,"content":"hello, this is a benchmark message"}\
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] BROADCAST = """
+            {"type":"broadcast","content":"hello, this is a benchmark message"}\
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] PING = """
+            {"type":"ping"}\
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private EmbeddedChannel sender;
+
+    private EmbeddedChannel receiver;
+
+    @Setup
+    public void setup() {
+        SessionRegistry sessions = new SessionRegistry();
+        RoomRegistry rooms = new RoomRegistry(sessions);
+        InboxService inbox = stub(InboxService.class);
+        ClusterRouter router = new ClusterRouter(sessions, rooms, null, null, inbox, new NettyCounters(), false, 0, 30);
+        WebSocketMessageHandler handler = new WebSocketMessageHandler(sessions, stub(MessageService.class),
+                new SnowflakeIdGenerator(0), inbox, rooms, stub(RoomService.class), router, stub(PresenceService.class),
+                stub(DeliveryService.class), 100);
+        sender = new EmbeddedChannel(new ChatFrameCodec(), handler);
+        receiver = new EmbeddedChannel(new ChatFrameCodec());
+        sessions.register(1, sender);
+        sessions.register(2, receiver);
+        sessions.online(sender);
+        sessions.online(receiver);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sender.finishAndReleaseAll();
+        receiver.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int privateMessage() {
+        sender.writeInbound(frame(PRIVATE));
+        return drain(sender) + drain(receiver);
+    }
+
+    @Benchmark
+    public int broadcast() {
+        sender.writeInbound(frame(BROADCAST));
+        return drain(sender) + drain(receiver);
+    }
+
+    @Benchmark
+    public int ping() {
+        sender.writeInbound(frame(PING));
+        return drain(sender);
+    }
+
+    private static TextWebSocketFrame frame(byte[] json) {
+        return new TextWebSocketFrame(Unpooled.wrappedBuffer(json));
+    }
+
+    private static int drain(EmbeddedChannel channel) {
+        int count = 0;
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(message);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 所有方法立即返回：boolean 返回 true（入队成功），long 返回 1（会话序号），其余返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> method.getReturnType() == boolean.class ? Boolean.TRUE
+                        : method.getReturnType() == long.class ? Long.valueOf(1) : null);
+    }
+}
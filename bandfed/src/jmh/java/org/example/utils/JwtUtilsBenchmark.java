@@ -0,0 +1,51 @@
+package org.example.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌校验：getUid 每次都做 HMAC 校验，resolveJwt 命中本地缓存后只检查黑名单和过期时间。
+ * 黑名单标记为已加载，不访问 Redis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    private JwtUtils jwtUtils;
+
+    private String token;
+
+    private String header;
+
+    @Setup
+    public void setup() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "SECRET_KEY", "benchmark-secret");
+        ReflectionTestUtils.setField(jwtUtils, "expire", 7);
+        ReflectionTestUtils.setField(jwtUtils, "cacheSize", 10000);
+        ReflectionTestUtils.setField(jwtUtils, "meterRegistry", new SimpleMeterRegistry());
+        jwtUtils.init();
+        ReflectionTestUtils.setField(jwtUtils, "blacklistLoaded", true);
+        User user = (User) User.withUsername("bench").password("******").authorities("ROLE_user").build();
+        token = jwtUtils.createJwt(user, 1, "bench");
+        header = "Bearer " + token;
+    }
+
+    @Benchmark
+    public Integer getUid() {
+        return jwtUtils.getUid(token);
+    }
+
+    @Benchmark
+    public Object resolveJwt() {
+        return jwtUtils.resolveJwt(header);
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.loadtest;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.HdrHistogram.Recorder;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.example.netty.codec.WireFormat;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个压测连接
+ * <p>
+ * 发送的消息正文以计划发送时间（System.nanoTime）开头，接收方用它计算端到端延迟；
+ * 使用计划时间而不是实际发送时间，发送端落后时排队的时间也计入延迟。
+ * 服务端按发送顺序回复 ACK，发送时间按顺序排队即可与 ACK 对应
+ */
+public class LoadClient extends SimpleChannelInboundHandler<WebSocketFrame> {
+
+    /**
+     * 所有连接共享的统计
+     */
+    public static class Stats {
+        final Recorder ack = new Recorder(3);
+        final Recorder privateLatency = new Recorder(3);
+        final Recorder broadcastLatency = new Recorder(3);
+        final LongAdder sent = new LongAdder();
+        final LongAdder acked = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder privateReceived = new LongAdder();
+        final LongAdder broadcastReceived = new LongAdder();
+    }
+
+    private final int uid;
+
+    private final WireFormat format;
+
+    private final Stats stats;
+
+    // 收到服务端下发的客户端 ID 后才算就绪，此时服务端已经注册了会话
+    private final CountDownLatch ready;
+
+    private final Queue<Long> pending = new ConcurrentLinkedQueue<>();
+
+    private volatile Channel channel;
+
+    public LoadClient(int uid, WireFormat format, Stats stats, CountDownLatch ready) {
+        this.uid = uid;
+        this.format = format;
+        this.stats = stats;
+        this.ready = ready;
+    }
+
+    public int uid() {
+        return uid;
+    }
+
+    public boolean isActive() {
+        Channel current = channel;
+        return current != null && current.isActive();
+    }
+
+    /**
+     * 发送一条消息，可在任意线程调用
+     *
+     * @param message   消息，正文需以 intended 开头
+     * @param intended  计划发送时间
+     */
+    public void send(ChatMessage message, long intended) {
+        Channel current = channel;
+        if (current == null || !current.isWritable()) {
+            // 出站缓冲已满时不再写入，按未确认处理
+            stats.errors.increment();
+            return;
+        }
+        pending.add(intended);
+        stats.sent.increment();
+        current.writeAndFlush(format.codec().encode(current.alloc(), message), current.voidPromise());
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+            channel = ctx.channel();
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) {
+        ChatMessage message = format.codec().decode(frame);
+        long now = System.nanoTime();
+        switch (message.getType()) {
+            case MessageType.ACK -> {
+                Long intended = pending.poll();
+                if (intended != null) stats.ack.recordValue(Math.max(0, now - intended));
+                stats.acked.increment();
+            }
+            case MessageType.PRIVATE -> {
+                stats.privateLatency.recordValue(Math.max(0, now - sentAt(message)));
+                stats.privateReceived.increment();
+            }
+            case MessageType.BROADCAST -> {
+                stats.broadcastLatency.recordValue(Math.max(0, now - sentAt(message)));
+                stats.broadcastReceived.increment();
+            }
+            case MessageType.ERROR -> {
+                // 入队失败等错误会代替 ACK 返回
+                pending.poll();
+                stats.errors.increment();
+            }
+            case MessageType.SYSTEM -> ready.countDown();
+            default -> { }
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        ctx.close();
+    }
+
+    private static long sentAt(ChatMessage message) {
+        String content = message.getContent();
+        int end = content.indexOf('|');
+        return Long.parseLong(end < 0 ? content : content.substring(0, end));
+    }
+}
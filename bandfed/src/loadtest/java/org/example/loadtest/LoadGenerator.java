@@ -0,0 +1,292 @@
+package org.example.loadtest;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.example.utils.JwtUtils;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * WebSocket 压测工具
+ * <p>
+ * 用与服务端相同的 JwtUtils 和密钥为每个连接签发令牌，建立指定数量的连接后按固定速率发送私聊和广播消息，
+ * 用 HDR 直方图记录 ACK 延迟和端到端投递延迟，结束后把结果写成 JSON 报告。
+ * <p>
+ * 运行：mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--connections=5000 --rate=20000"
+ */
+public class LoadGenerator {
+
+    // 发送节拍，每个节拍按速率补齐应发的消息数
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LoadTestOptions options;
+
+    private final LoadClient.Stats stats = new LoadClient.Stats();
+
+    private final Recorder connectLatency = new Recorder(3);
+
+    private final List<LoadClient> clients = new ArrayList<>();
+
+    private final List<Channel> channels = Collections.synchronizedList(new ArrayList<>());
+
+    private int connectFailures;
+
+    private final String padding;
+
+    public LoadGenerator(LoadTestOptions options) {
+        this.options = options;
+        this.padding = "x".repeat(Math.max(0, options.payload() - 20));
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        new LoadGenerator(options).run();
+    }
+
+    public void run() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(options.threads());
+        try {
+            JwtUtils jwtUtils = jwtUtils();
+            connect(group, jwtUtils);
+            System.out.printf("Connected %d/%d, failed %d%n", clients.size(), options.connections(), connectFailures);
+            if (clients.size() < 2) {
+                throw new IllegalStateException("Not enough connections to run the test");
+            }
+            // 预热阶段结束后丢弃已记录的数据
+            drive(options.warmupSeconds());
+            resetStats();
+            long start = System.nanoTime();
+            drive(options.durationSeconds());
+            // 留出时间接收最后发出的消息
+            Thread.sleep(2000);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(seconds);
+        } finally {
+            synchronized (channels) {
+                channels.forEach(Channel::close);
+            }
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    private JwtUtils jwtUtils() throws IOException {
+        String secret = options.secret();
+        if (secret == null) {
+            YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+            yaml.setResources(new ClassPathResource("application.yaml"));
+            secret = Objects.requireNonNull(yaml.getObject()).getProperty("spring.security.jwt.key");
+        }
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "SECRET_KEY", secret);
+        ReflectionTestUtils.setField(jwtUtils, "expire", 1);
+        ReflectionTestUtils.setField(jwtUtils, "cacheSize", 1);
+        ReflectionTestUtils.setField(jwtUtils, "meterRegistry", new SimpleMeterRegistry());
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    /**
+     * 建立全部连接，同时握手的连接数受 connectConcurrency 限制，等待所有连接收到服务端下发的客户端 ID
+     */
+    private void connect(EventLoopGroup group, JwtUtils jwtUtils) throws InterruptedException {
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000);
+        Semaphore inFlight = new Semaphore(options.connectConcurrency());
+        CountDownLatch ready = new CountDownLatch(options.connections());
+        List<LoadClient> connecting = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < options.connections(); i++) {
+            int uid = options.uidBase() + i;
+            String name = "load-" + uid;
+            User user = (User) User.withUsername(name).password("******").authorities("ROLE_user").build();
+            DefaultHttpHeaders headers = new DefaultHttpHeaders();
+            headers.set(HttpHeaderNames.AUTHORIZATION, "Bearer " + jwtUtils.createJwt(user, uid, name));
+            LoadClient client = new LoadClient(uid, options.format(), stats, ready);
+            inFlight.acquire();
+            long begin = System.nanoTime();
+            bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(
+                            new HttpClientCodec(),
+                            new HttpObjectAggregator(65536),
+                            new WebSocketClientProtocolHandler(WebSocketClientHandshakerFactory.newHandshaker(
+                                    options.url(), WebSocketVersion.V13, options.format().subprotocol(),
+                                    false, headers, 65536)),
+                            new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                                    if (evt instanceof WebSocketClientProtocolHandler.ClientHandshakeStateEvent state) {
+                                        if (state == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+                                            connectLatency.recordValue(System.nanoTime() - begin);
+                                            connecting.add(client);
+                                            inFlight.release();
+                                        } else if (state == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_TIMEOUT) {
+                                            failed(inFlight, ready);
+                                        }
+                                    }
+                                    super.userEventTriggered(ctx, evt);
+                                }
+
+                                @Override
+                                public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                                    // 握手被拒绝等错误
+                                    if (!connecting.contains(client)) failed(inFlight, ready);
+                                    ctx.close();
+                                }
+                            },
+                            client);
+                }
+            }).connect(options.url().getHost(), port()).addListener((ChannelFutureListener) future -> {
+                if (future.isSuccess()) {
+                    channels.add(future.channel());
+                } else {
+                    failed(inFlight, ready);
+                }
+            });
+        }
+        if (!ready.await(60, TimeUnit.SECONDS)) {
+            System.out.printf("Timed out waiting for %d connections%n", ready.getCount());
+        }
+        clients.addAll(connecting);
+        clients.removeIf(client -> !client.isActive());
+    }
+
+    private synchronized void failed(Semaphore inFlight, CountDownLatch ready) {
+        connectFailures++;
+        inFlight.release();
+        ready.countDown();
+    }
+
+    /**
+     * 按固定速率发送消息，每条消息标记计划发送时间，发送落后时补发并把落后的时间计入延迟
+     */
+    private void drive(int seconds) throws InterruptedException {
+        if (seconds <= 0) return;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double interval = 1e9 / options.rate();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long index = 0;
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= end) break;
+            long intended;
+            while ((intended = start + (long) (index * interval)) <= now) {
+                send(random, intended);
+                index++;
+            }
+            long sleep = Math.min(TICK_NANOS, intended - now);
+            if (sleep > 0) TimeUnit.NANOSECONDS.sleep(sleep);
+        }
+    }
+
+    private void send(ThreadLocalRandom random, long intended) {
+        LoadClient from = clients.get(random.nextInt(clients.size()));
+        ChatMessage message = new ChatMessage().setContent(intended + "|" + padding);
+        if (random.nextDouble() < options.broadcastRatio()) {
+            message.setType(MessageType.BROADCAST);
+        } else {
+            LoadClient to = from;
+            while (to == from) {
+                to = clients.get(random.nextInt(clients.size()));
+            }
+            message.setType(MessageType.PRIVATE).setTargetUserId(to.uid());
+        }
+        from.send(message, intended);
+    }
+
+    private void resetStats() {
+        stats.ack.reset();
+        stats.privateLatency.reset();
+        stats.broadcastLatency.reset();
+        stats.sent.reset();
+        stats.acked.reset();
+        stats.errors.reset();
+        stats.privateReceived.reset();
+        stats.broadcastReceived.reset();
+    }
+
+    private void report(double seconds) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", Map.of(
+                "url", options.url().toString(),
+                "connections", options.connections(),
+                "rate", options.rate(),
+                "broadcastRatio", options.broadcastRatio(),
+                "durationSeconds", options.durationSeconds(),
+                "payload", options.payload(),
+                "format", options.format().subprotocol()));
+        report.put("connections", Map.of(
+                "established", clients.size(),
+                "failed", connectFailures,
+                "handshakeMillis", summary(connectLatency.getIntervalHistogram(), 1e6)));
+        long sent = stats.sent.sum();
+        report.put("messages", Map.of(
+                "sent", sent,
+                "acked", stats.acked.sum(),
+                "errors", stats.errors.sum(),
+                "privateReceived", stats.privateReceived.sum(),
+                "broadcastReceived", stats.broadcastReceived.sum(),
+                "sentPerSecond", sent / seconds));
+        report.put("latencyMicros", Map.of(
+                "ack", summary(stats.ack.getIntervalHistogram(), 1e3),
+                "private", summary(stats.privateLatency.getIntervalHistogram(), 1e3),
+                "broadcast", summary(stats.broadcastLatency.getIntervalHistogram(), 1e3)));
+        String json = JSON.toJSONString(report, JSONWriter.Feature.PrettyFormat);
+        Path path = Path.of(options.report());
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        Files.writeString(path, json);
+        System.out.println(json);
+        System.out.println("Report written to " + path.toAbsolutePath());
+    }
+
+    /**
+     * 直方图摘要，数值按 scale 换算单位
+     */
+    private static Map<String, Object> summary(Histogram histogram, double scale) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        if (histogram.getTotalCount() == 0) return summary;
+        summary.put("min", histogram.getMinValue() / scale);
+        summary.put("mean", histogram.getMean() / scale);
+        summary.put("p50", histogram.getValueAtPercentile(50) / scale);
+        summary.put("p90", histogram.getValueAtPercentile(90) / scale);
+        summary.put("p99", histogram.getValueAtPercentile(99) / scale);
+        summary.put("p999", histogram.getValueAtPercentile(99.9) / scale);
+        summary.put("max", histogram.getMaxValue() / scale);
+        return summary;
+    }
+
+    private int port() {
+        int port = options.url().getPort();
+        return port > 0 ? port : 80;
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.loadtest;
+
+import org.example.netty.codec.WireFormat;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 压测参数，命令行以 --key=value 传入，未给出的使用默认值
+ *
+ * @param url               WebSocket 地址
+ * @param connections       连接数，每个连接使用不同的 uid
+ * @param rate              每秒发送的消息总数
+ * @param broadcastRatio    广播消息占比，其余为私聊
+ * @param warmupSeconds     预热时长，期间的延迟不计入报告
+ * @param durationSeconds   统计时长
+ * @param payload           消息正文字节数
+ * @param format            消息格式 json 或 binary
+ * @param uidBase           第一个连接的 uid
+ * @param connectConcurrency 同时进行握手的连接数上限
+ * @param threads           客户端 I/O 线程数
+ * @param secret            签发令牌的密钥，默认读取 application.yaml 中的 spring.security.jwt.key
+ * @param report            报告输出路径
+ */
+public record LoadTestOptions(URI url,
+                              int connections,
+                              int rate,
+                              double broadcastRatio,
+                              int warmupSeconds,
+                              int durationSeconds,
+                              int payload,
+                              WireFormat format,
+                              int uidBase,
+                              int connectConcurrency,
+                              int threads,
+                              String secret,
+                              String report) {
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            int index = arg.indexOf('=');
+            values.put(arg.substring(2, index), arg.substring(index + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                URI.create(values.getOrDefault("url", "ws://127.0.0.1:8088/ws")),
+                Integer.parseInt(values.getOrDefault("connections", "1000")),
+                Integer.parseInt(values.getOrDefault("rate", "1000")),
+                Double.parseDouble(values.getOrDefault("broadcast-ratio", "0")),
+                Integer.parseInt(values.getOrDefault("warmup", "5")),
+                Integer.parseInt(values.getOrDefault("duration", "30")),
+                Integer.parseInt(values.getOrDefault("payload", "64")),
+                "binary".equalsIgnoreCase(values.getOrDefault("format", "json")) ? WireFormat.BINARY : WireFormat.JSON,
+                Integer.parseInt(values.getOrDefault("uid-base", "1000000")),
+                Integer.parseInt(values.getOrDefault("connect-concurrency", "256")),
+                Integer.parseInt(values.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                values.get("secret"),
+                values.getOrDefault("report", "target/loadtest-report.json"));
+        if (options.connections < 2) {
+            throw new IllegalArgumentException("At least 2 connections are required");
+        }
+        if (options.broadcastRatio < 0 || options.broadcastRatio > 1) {
+            throw new IllegalArgumentException("broadcast-ratio must be between 0 and 1");
+        }
+        return options;
+    }
+}
@@ -0,0 +1,392 @@
+package org.example.cluster;
+
+import com.alibaba.fastjson2.JSON;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.example.netty.NettyCounters;
+import org.example.netty.session.RoomRegistry;
+import org.example.netty.session.SessionRegistry;
+import org.example.service.InboxService;
+import org.example.utils.Const;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息路由，单节点时只投递到本地会话，集群模式下通过 Redis 在节点之间转发
+ * <p>
+ * 集群模式下每个节点把本地在线的 uid 登记到 Redis（每个 uid 一个 ZSET，member 为节点号，score 为过期时间），
+ * 并定时续期，节点宕机后登记在一个 TTL 内自然失效。私聊消息先投递本地连接，
+ * 再发布到目标用户所在的其他节点的专属频道；广播和群聊消息本地投递后发布到共享的广播频道，各节点忽略自己发出的消息，
+ * 群聊消息由各节点发送给本节点上的房间成员。
+ * <p>
+ * 节点号决定专属频道，并用来识别自己发出的广播，集群模式下必须显式配置且各节点不同：
+ * 启动时在 Redis 中以租约的形式占用节点号，已被其他节点占用时启动失败。
+ */
+@Slf4j
+@Component
+public class ClusterRouter {
+
+    // 每次管道提交的命令数
+    private static final int PIPELINE_CHUNK = 1000;
+
+    // 续期节点号租约：不存在时占用，仍由本进程持有时延长，被其他进程持有时返回 0
+    private static final RedisScript<Long> RENEW_LEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+                return 1
+            end
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                redis.call('PEXPIRE', KEYS[1], ARGV[2])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    // 释放节点号租约，只删除本进程持有的租约
+    private static final RedisScript<Long> RELEASE_LEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final SessionRegistry sessions;
+
+    private final RoomRegistry rooms;
+
+    private final StringRedisTemplate template;
+
+    private final RedisMessageListenerContainer container;
+
+    private final InboxService inbox;
+
+    private final NettyCounters counters;
+
+    private final boolean enabled;
+
+    private final int nodeId;
+
+    // 本进程的随机标识，作为节点号租约的持有者
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final long presenceTtlMillis;
+
+    private ScheduledExecutorService heartbeat;
+
+    public ClusterRouter(SessionRegistry sessions,
+                         RoomRegistry rooms,
+                         StringRedisTemplate template,
+                         RedisMessageListenerContainer container,
+                         InboxService inbox,
+                         NettyCounters counters,
+                         @Value("${chat.cluster.enabled:false}") boolean enabled,
+                         @Value("${chat.node-id:#{null}}") Integer nodeId,
+                         @Value("${chat.cluster.presence-ttl-seconds:30}") int presenceTtlSeconds) {
+        this.sessions = sessions;
+        this.rooms = rooms;
+        this.template = template;
+        this.container = container;
+        this.inbox = inbox;
+        this.counters = counters;
+        this.enabled = enabled;
+        if (enabled && nodeId == null) {
+            // 所有节点默认都是 0 时，各节点会把彼此的消息当作自己发出的而丢弃
+            throw new IllegalStateException("chat.cluster.enabled requires an explicit chat.node-id, unique per node");
+        }
+        this.nodeId = nodeId == null ? 0 : nodeId;
+        this.presenceTtlMillis = TimeUnit.SECONDS.toMillis(presenceTtlSeconds);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        claimNodeId();
+        container.addMessageListener((message, pattern) -> onMessage(message), List.of(
+                new ChannelTopic(Const.CLUSTER_NODE_CHANNEL + nodeId),
+                new ChannelTopic(Const.CLUSTER_BROADCAST_CHANNEL)));
+        // 在 TTL 内续期三次，偶尔一次失败不会导致登记过期
+        long interval = presenceTtlMillis / 3;
+        heartbeat = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("cluster-heartbeat", true));
+        heartbeat.scheduleWithFixedDelay(this::refreshPresence, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Cluster mode enabled, node {}", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) return;
+        heartbeat.shutdownNow();
+        try {
+            template.execute(RELEASE_LEASE_SCRIPT, List.of(Const.CLUSTER_NODE_LEASE + nodeId), instanceId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release node id {}: {}", nodeId, e.getMessage());
+        }
+        // 主动注销本节点的登记，不必等待过期
+        try {
+            pipelined(sessions.uids(), (operations, uid) ->
+                    operations.opsForZSet().remove(Const.CLUSTER_PRESENCE + uid, String.valueOf(nodeId)));
+        } catch (RuntimeException e) {
+            log.warn("Failed to clear presence of node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * 用户在本节点建立了连接
+     *
+     * @param uid 用户 ID
+     */
+    public void online(int uid) {
+        if (!enabled) return;
+        try {
+            String key = Const.CLUSTER_PRESENCE + uid;
+            template.opsForZSet().add(key, String.valueOf(nodeId), System.currentTimeMillis() + presenceTtlMillis);
+            template.expire(key, presenceTtlMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // 下一次心跳会重新登记
+            log.warn("Failed to register presence of {}: {}", uid, e.getMessage());
+        }
+    }
+
+    /**
+     * 用户在本节点的一个连接已断开，最后一个连接断开时注销登记
+     *
+     * @param uid 用户 ID
+     */
+    public void offline(int uid) {
+        if (!enabled || sessions.lookup(uid).length > 0) return;
+        try {
+            template.opsForZSet().remove(Const.CLUSTER_PRESENCE + uid, String.valueOf(nodeId));
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove presence of {}: {}", uid, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 查询用户是否在其他节点上在线，单节点模式下总是返回 false
+     *
+     * @param uid 用户 ID
+     * @return 是否在其他节点上有连接
+     */
+    public boolean onlineElsewhere(int uid) {
+        if (!enabled) return false;
+        try {
+            return !remoteNodes(uid).isEmpty();
+        } catch (RuntimeException e) {
+            log.warn("Failed to look up presence of {}: {}", uid, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 把消息投递给用户在所有节点上的连接
+     *
+     * @param uid 用户 ID
+     * @param message 消息
+     * @return 是否有节点接收，用户不在任何节点上时返回 false
+     */
+    public boolean sendToUser(int uid, ChatMessage message) {
+        Channel[] targets = sessions.lookup(uid);
+        for (Channel target : targets) {
+            target.writeAndFlush(message);
+        }
+        boolean delivered = targets.length > 0;
+        if (!enabled) return delivered;
+        try {
+            List<String> nodes = remoteNodes(uid);
+            String envelope = null;
+            for (String node : nodes) {
+                if (envelope == null) {
+                    envelope = JSON.toJSONString(new Envelope(nodeId, uid, message));
+                }
+                Long receivers = template.convertAndSend(Const.CLUSTER_NODE_CHANNEL + node, envelope);
+                delivered |= receivers != null && receivers > 0;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to route message to {}: {}", uid, e.getMessage());
+        }
+        return delivered;
+    }
+
+    /**
+     * 向所有节点上的所有连接广播消息
+     *
+     * @param alloc 缓冲区分配器
+     * @param message 消息
+     */
+    public void broadcast(ByteBufAllocator alloc, ChatMessage message) {
+        localBroadcast(alloc, message);
+        if (!enabled) return;
+        try {
+            template.convertAndSend(Const.CLUSTER_BROADCAST_CHANNEL, JSON.toJSONString(new Envelope(nodeId, 0, message)));
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish broadcast: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 向房间内所有节点上的成员发送消息
+     *
+     * @param alloc 缓冲区分配器
+     * @param roomId 房间 ID
+     * @param message 消息
+     */
+    public void sendToRoom(ByteBufAllocator alloc, int roomId, ChatMessage message) {
+        localRoomFanOut(alloc, roomId, message);
+        if (!enabled) return;
+        try {
+            template.convertAndSend(Const.CLUSTER_BROADCAST_CHANNEL, JSON.toJSONString(new Envelope(nodeId, 0, message)));
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish room message: {}", e.getMessage());
+        }
+    }
+
+    private void localBroadcast(ByteBufAllocator alloc, ChatMessage message) {
+        long start = System.nanoTime();
+        int receivers = sessions.broadcast(alloc, message);
+        counters.broadcastFanOut(receivers, System.nanoTime() - start);
+    }
+
+    private void localRoomFanOut(ByteBufAllocator alloc, int roomId, ChatMessage message) {
+        long start = System.nanoTime();
+        int receivers = rooms.fanOut(alloc, roomId, message);
+        counters.roomFanOut(receivers, System.nanoTime() - start);
+    }
+
+    /**
+     * @return 用户所在的其他节点，登记已过期的节点不包含在内
+     */
+    private List<String> remoteNodes(int uid) {
+        Set<String> nodes = template.opsForZSet()
+                .rangeByScore(Const.CLUSTER_PRESENCE + uid, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        if (nodes == null || nodes.isEmpty()) return List.of();
+        String self = String.valueOf(nodeId);
+        return nodes.stream().filter(node -> !node.equals(self)).toList();
+    }
+
+    private void onMessage(Message message) {
+        Envelope envelope = JSON.parseObject(message.getBody(), Envelope.class);
+        if (envelope.origin() == nodeId) return;
+        if (envelope.target() == 0) {
+            ChatMessage payload = envelope.message();
+            if (MessageType.ROOM.equals(payload.getType())) {
+                localRoomFanOut(ByteBufAllocator.DEFAULT, payload.getRoomId(), payload);
+            } else {
+                localBroadcast(ByteBufAllocator.DEFAULT, payload);
+            }
+            return;
+        }
+        Channel[] targets = sessions.lookup(envelope.target());
+        if (targets.length == 0) {
+            // 登记尚未过期但用户已经断开，转存离线收件箱
+            try {
+                inbox.push(envelope.target(), envelope.message());
+            } catch (RuntimeException e) {
+                log.warn("Failed to store offline message for {}: {}", envelope.target(), e.getMessage());
+            }
+            return;
+        }
+        for (Channel target : targets) {
+            target.writeAndFlush(envelope.message());
+        }
+    }
+
+    /**
+     * 占用节点号，已被其他节点占用时启动失败
+     */
+    private void claimNodeId() {
+        String lease = Const.CLUSTER_NODE_LEASE + nodeId;
+        if (Boolean.TRUE.equals(template.opsForValue().setIfAbsent(lease, instanceId, presenceTtlMillis, TimeUnit.MILLISECONDS))) {
+            return;
+        }
+        throw new IllegalStateException("chat.node-id " + nodeId + " is already in use by another node"
+                + " (a node that crashed releases it after " + presenceTtlMillis / 1000 + "s)");
+    }
+
+    /**
+     * 续期节点号租约，租约丢失（例如 Redis 重启）时重新占用
+     */
+    private void renewNodeId() {
+        try {
+            Long renewed = template.execute(RENEW_LEASE_SCRIPT, List.of(Const.CLUSTER_NODE_LEASE + nodeId),
+                    instanceId, String.valueOf(presenceTtlMillis));
+            if (renewed == null || renewed == 0) {
+                log.error("chat.node-id {} is also used by another node, cross-node messages will be lost", nodeId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew node id {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * 为本节点所有在线用户续期登记，并清理该用户已过期的其他节点登记
+     */
+    private void refreshPresence() {
+        renewNodeId();
+        long now = System.currentTimeMillis();
+        String self = String.valueOf(nodeId);
+        try {
+            pipelined(sessions.uids(), (operations, uid) -> {
+                String key = Const.CLUSTER_PRESENCE + uid;
+                operations.opsForZSet().add(key, self, now + presenceTtlMillis);
+                operations.opsForZSet().removeRangeByScore(key, 0, now);
+                operations.expire(key, presenceTtlMillis, TimeUnit.MILLISECONDS);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh presence of node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void pipelined(int[] uids, PresenceCommand command) {
+        for (int from = 0; from < uids.length; from += PIPELINE_CHUNK) {
+            int start = from;
+            int end = Math.min(uids.length, from + PIPELINE_CHUNK);
+            template.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    for (int i = start; i < end; i++) {
+                        command.apply((RedisOperations<String, String>) operations, uids[i]);
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    private interface PresenceCommand {
+        void apply(RedisOperations<String, String> operations, int uid);
+    }
+
+    /**
+     * 节点之间转发的消息，target 为 0 表示广播
+     */
+    record Envelope(int origin, int target, ChatMessage message) {
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.example.entity.dto.Account;
+import org.example.mapper.AccountMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 账号本地缓存
+ * <p>
+ * 同时作为 MyBatis 拦截器注册，AccountMapper 上的每一条写语句执行后都在这里失效相关缓存，
+ * 不依赖调用方走哪个 Service 方法。能从参数确定 uid 时只失效这些账号，否则清空整个缓存。
+ * 只覆盖本节点的写入，其他节点的修改依靠有效期兜底
+ */
+@Component
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public class AccountCache implements Interceptor {
+
+    private static final String NAMESPACE = AccountMapper.class.getName() + ".";
+
+    // 本地缓存的账号数量上限
+    @Value("${spring.security.account.cache-size:10000}")
+    private int cacheSize;
+
+    // 账号缓存的有效期
+    @Value("${spring.security.account.cache-ttl-seconds:300}")
+    private int cacheTtlSeconds;
+
+    // 登录名（用户名或邮箱）-> uid
+    private Cache<String, Integer> uids;
+
+    // uid -> 账号，按 uid 失效，同一账号通过用户名和邮箱登录共用一份
+    private Cache<Integer, Account> accounts;
+
+    @PostConstruct
+    public void init() {
+        Duration ttl = Duration.ofSeconds(cacheTtlSeconds);
+        uids = Caffeine.newBuilder().maximumSize(cacheSize).expireAfterWrite(ttl).build();
+        accounts = Caffeine.newBuilder().maximumSize(cacheSize).expireAfterWrite(ttl).build();
+    }
+
+    /**
+     * 按登录名读取缓存的账号
+     * <p>
+     * 账号的用户名和邮箱都已不是该登录名时视为过期，避免改名后仍能用旧名登录
+     *
+     * @param login 用户名或邮箱
+     * @return 账号，未缓存时返回 null
+     */
+    public Account get(String login) {
+        Integer uid = uids.getIfPresent(login);
+        if (uid == null) return null;
+        Account account = accounts.getIfPresent(uid);
+        if (account != null && !login.equals(account.getUsername()) && !login.equals(account.getEmail())) {
+            uids.invalidate(login);
+            return null;
+        }
+        return account;
+    }
+
+    public void put(String login, Account account) {
+        accounts.put(account.getUid(), account);
+        uids.put(login, account.getUid());
+    }
+
+    /**
+     * 失效一个账号，连同它的用户名和邮箱登录名
+     *
+     * @param uid 用户 ID
+     */
+    public void evict(Integer uid) {
+        Account old = accounts.getIfPresent(uid);
+        if (old != null) evictLogins(old);
+        accounts.invalidate(uid);
+    }
+
+    public void evictAll() {
+        uids.invalidateAll();
+        accounts.invalidateAll();
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        try {
+            return invocation.proceed();
+        } finally {
+            if (statement.getId().startsWith(NAMESPACE)) {
+                evict(invocation.getArgs()[1]);
+            }
+        }
+    }
+
+    private void evict(Object parameter) {
+        if (parameter instanceof Map<?, ?> params) {
+            if (params.containsKey("uids") && params.get("uids") instanceof Collection<?> ids) {
+                // markOnline / markOffline
+                ids.forEach(id -> evict((Integer) id));
+                return;
+            }
+            // updateById 的实体在 et 中；带条件构造器 ew 的更新范围无法确定
+            boolean wrapper = params.containsKey("ew") && params.get("ew") != null;
+            if (!wrapper && params.containsKey("et") && params.get("et") instanceof Account account) {
+                parameter = account;
+            }
+        }
+        if (parameter instanceof Account account) {
+            // insert 时 uid 为空，但新账号的登录名可能还指向已删除的旧账号
+            evictLogins(account);
+            if (account.getUid() != null) evict(account.getUid());
+        } else if (parameter instanceof Integer uid) {
+            evict(uid);
+        } else {
+            evictAll();
+        }
+    }
+
+    private void evictLogins(Account account) {
+        if (account.getUsername() != null) uids.invalidate(account.getUsername());
+        if (account.getEmail() != null) uids.invalidate(account.getEmail());
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.example.service.MessageService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * 等待写入数据库的消息数，持续增长说明写库跟不上
+     */
+    @Bean
+    public MeterBinder messageQueueMetrics(MessageService messageService) {
+        return registry -> Gauge.builder("chat.store.queue.depth", messageService, MessageService::queueDepth)
+                .description("Messages waiting for the batch writer")
+                .baseUnit("messages")
+                .register(registry);
+    }
+}
@@ -1,67 +1,170 @@
 package org.example.config;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.example.netty.WebSocketChannelInitializer;
-import org.example.utils.JwtUtils;
+import org.example.service.MessageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
 @Configuration
 public class NettyConfig {
 
     @Value("${netty.port}")
     private int port;
 
+    // 传输方式：auto（优先 epoll）、epoll、nio
+    @Value("${netty.transport:auto}")
+    private String transport;
+
+    // boss 线程数，SO_REUSEPORT 下会提升到 acceptor 数量
+    @Value("${netty.boss-threads:1}")
+    private int bossThreads;
+
+    // worker 线程数，0 表示使用 Netty 默认值（CPU 核数 * 2）
+    @Value("${netty.worker-threads:0}")
+    private int workerThreads;
+
+    // 通过 SO_REUSEPORT 绑定同一端口的监听 socket 数量，仅 epoll 生效
+    @Value("${netty.acceptors:1}")
+    private int acceptors;
+
+    @Value("${netty.backlog:1024}")
+    private int backlog;
+
+    @Value("${netty.tcp-no-delay:true}")
+    private boolean tcpNoDelay;
+
+    // 接收/发送缓冲区大小，0 表示使用操作系统默认值
+    @Value("${netty.rcvbuf:0}")
+    private int receiveBufferSize;
+
+    @Value("${netty.sndbuf:0}")
+    private int sendBufferSize;
+
+    @Value("${netty.pooled-allocator:true}")
+    private boolean pooledAllocator;
+
+    // 出站缓冲超过高水位后连接变为不可写，降到低水位以下恢复
+    @Value("${netty.write-buffer.low:32768}")
+    private int writeBufferLow;
+
+    @Value("${netty.write-buffer.high:65536}")
+    private int writeBufferHigh;
+
     private EventLoopGroup bossGroup;
 
     private EventLoopGroup workerGroup;
 
-    private Channel channel;
+    private final List<Channel> channels = new ArrayList<>();
 
     @Autowired
-    private JwtUtils jwtUtils;
+    private WebSocketChannelInitializer webSocketChannelInitializer;
 
-    @Bean
-    public WebSocketChannelInitializer webSocketChannelInitializer() {
-        return new WebSocketChannelInitializer(jwtUtils);
-    }
+    @Autowired
+    private MessageService messageService;
 
     @PostConstruct
     public void startNettyServer() throws InterruptedException {
-        // 创建一个NioEventLoopGroup实例，用于接收连接，线程数为1
-        bossGroup = new NioEventLoopGroup(1);
-        // 创建一个NioEventLoopGroup实例，用于处理连接，线程数为默认值
-        workerGroup = new NioEventLoopGroup();
+        // 开始接收消息前，先补写上次退出时预写日志中尚未入库的消息
+        int recovered = messageService.recover();
+        if (recovered > 0) {
+            log.info("Recovered {} messages from journal", recovered);
+        }
+        boolean epoll = useEpoll();
+        // SO_REUSEPORT 只有 epoll 支持，NIO 下只能有一个 acceptor
+        int acceptorCount = epoll ? Math.max(acceptors, 1) : 1;
+        // 每个 acceptor 独占一个 boss 线程
+        int bossCount = Math.max(bossThreads, acceptorCount);
+        if (epoll) {
+            bossGroup = new EpollEventLoopGroup(bossCount);
+            workerGroup = new EpollEventLoopGroup(workerThreads);
+        } else {
+            bossGroup = new NioEventLoopGroup(bossCount);
+            workerGroup = new NioEventLoopGroup(workerThreads);
+        }
+        Class<? extends ServerChannel> channelClass = epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+        ByteBufAllocator allocator = pooledAllocator ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
         // 创建一个ServerBootstrap实例，用于配置和启动Netty服务器
         ServerBootstrap bootstrap = new ServerBootstrap();
 
         // 设置事件循环组
         bootstrap.group(bossGroup, workerGroup)
-                // 设置通道类型为NioServerSocketChannel
-                .channel(NioServerSocketChannel.class)
+                // 设置通道类型
+                .channel(channelClass)
+                .option(ChannelOption.SO_BACKLOG, backlog)
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .option(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.TCP_NODELAY, tcpNoDelay)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(writeBufferLow, writeBufferHigh))
                 // 设置子通道处理器，使用自定义的WebSocketChannelInitializer
-                .childHandler(new WebSocketChannelInitializer(jwtUtils));
+                .childHandler(webSocketChannelInitializer);
+        if (receiveBufferSize > 0) {
+            bootstrap.childOption(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+        if (sendBufferSize > 0) {
+            bootstrap.childOption(ChannelOption.SO_SNDBUF, sendBufferSize);
+        }
+        if (acceptorCount > 1) {
+            // 多个监听 socket 绑定同一端口，由内核在它们之间分配新连接
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
         // 绑定端口并启动服务器，不阻塞主线程
-        channel = bootstrap.bind(port).sync().channel();
-        // 打印服务器启动信息
-        System.out.println("Netty server started on port " + port);
+        for (int i = 0; i < acceptorCount; i++) {
+            channels.add(bootstrap.bind(port).sync().channel());
+        }
+        // 记录服务器启动信息
+        log.info("Netty server started on port {} ({}, acceptors={})", port, epoll ? "epoll" : "nio", acceptorCount);
+    }
+
+    /**
+     * 根据配置决定是否使用 epoll，epoll 不可用时回退到 NIO
+     *
+     * @return 是否使用 epoll 传输
+     */
+    private boolean useEpoll() {
+        if ("nio".equalsIgnoreCase(transport)) {
+            return false;
+        }
+        if (Epoll.isAvailable()) {
+            return true;
+        }
+        if ("epoll".equalsIgnoreCase(transport)) {
+            log.warn("Epoll is not available, falling back to NIO: {}", String.valueOf(Epoll.unavailabilityCause()));
+        }
+        return false;
     }
 
     @PreDestroy
     public void stopNettyServer() {
         // 关闭服务器通道
-        if (channel != null) {
+        for (Channel channel : channels) {
             channel.close();
         }
+        channels.clear();
         // 优雅地关闭bossGroup
         if (bossGroup != null) {
             bossGroup.shutdownGracefully();
@@ -70,7 +173,7 @@ public class NettyConfig {
         if (workerGroup != null) {
             workerGroup.shutdownGracefully();
         }
-        // 打印服务器关闭信息
-        System.out.println("Netty server stopped");
+        // 记录服务器关闭信息
+        log.info("Netty server stopped");
     }
 }
@@ -0,0 +1,106 @@
+package org.example.config;
+
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ReconnectAttemptEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.example.utils.Const;
+import org.example.utils.JwtUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+@Slf4j
+@Configuration
+public class RedisConfig {
+
+    // 连接 Redis 失败后的重试间隔，也是检查订阅状态的间隔
+    private static final long RETRY_INTERVAL_MILLIS = 30_000;
+
+    /**
+     * Redis 发布订阅监听容器，订阅 JWT 黑名单变更以同步本地黑名单
+     * <p>
+     * 不随上下文自动启动，Redis 不可用时不影响应用启动
+     *
+     * @param factory  Redis 连接工厂
+     * @param jwtUtils JWT 工具类
+     * @return 监听容器
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory, JwtUtils jwtUtils) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+            @Override
+            public boolean isAutoStartup() {
+                return false;
+            }
+        };
+        container.setConnectionFactory(factory);
+        container.addMessageListener(
+                (message, pattern) -> jwtUtils.onBlacklisted(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(Const.JWT_BLACK_LIST_CHANNEL));
+        return container;
+    }
+
+    /**
+     * 应用启动后在后台订阅频道并加载黑名单，失败时定期重试；之后定期检查订阅状态
+     * <p>
+     * 订阅正常时黑名单完全依靠发布订阅同步，不再全量加载。订阅中断期间发布的注销通知会丢失：
+     * Lettuce 连接意外断开（开始重连）或监听容器未在监听时黑名单标记为失效，令牌校验回退到 Redis 查询，
+     * 连接恢复、重新订阅后才全量重新加载一次
+     *
+     * @param event 启动完成事件
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSubscriptions(ApplicationReadyEvent event) {
+        RedisMessageListenerContainer container = event.getApplicationContext().getBean(RedisMessageListenerContainer.class);
+        RedisConnectionFactory factory = event.getApplicationContext().getBean(RedisConnectionFactory.class);
+        JwtUtils jwtUtils = event.getApplicationContext().getBean(JwtUtils.class);
+        Thread subscriber = Thread.ofVirtual().name("redis-subscriber").unstarted(() -> maintain(container, jwtUtils));
+        if (factory instanceof LettuceConnectionFactory lettuce) {
+            lettuce.getRequiredNativeClient().getResources().eventBus().get().subscribe(e -> {
+                // 流水线等专用连接用完主动关闭时也会发出断开事件，只有重连才说明连接意外中断
+                if (e instanceof ReconnectAttemptEvent) {
+                    jwtUtils.blacklistStale();
+                } else if (e instanceof ConnectionActivatedEvent) {
+                    LockSupport.unpark(subscriber);
+                }
+            });
+        }
+        subscriber.start();
+    }
+
+    private void maintain(RedisMessageListenerContainer container, JwtUtils jwtUtils) {
+        while (!Thread.currentThread().isInterrupted()) {
+            long waitMillis;
+            try {
+                container.start();
+                if (container.isListening()) {
+                    // 只在首次订阅或订阅中断恢复后全量加载
+                    if (!jwtUtils.isBlacklistLoaded())
+                        jwtUtils.loadBlacklist();
+                    waitMillis = RETRY_INTERVAL_MILLIS;
+                } else {
+                    // 容器正在自行恢复订阅
+                    jwtUtils.blacklistStale();
+                    waitMillis = RETRY_INTERVAL_MILLIS;
+                }
+            } catch (Exception e) {
+                log.warn("Redis subscription failed, retrying in {}ms: {}", RETRY_INTERVAL_MILLIS, e.getMessage());
+                jwtUtils.blacklistStale();
+                // 复位容器状态，下次重试时重新订阅
+                container.stop();
+                waitMillis = RETRY_INTERVAL_MILLIS;
+            }
+            // 连接恢复时会被提前唤醒
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(waitMillis));
+        }
+    }
+}
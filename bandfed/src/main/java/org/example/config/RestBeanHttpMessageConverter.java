@@ -0,0 +1,49 @@
+package org.example.config;
+
+import org.example.entity.RestBean;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+
+/**
+ * 控制器返回 RestBean 时直接以 UTF-8 JSON 写入响应流，与 SecurityConfig 中的处理器使用同一套编码，
+ * 不带数据的响应使用缓存的编码结果并给出 Content-Length
+ */
+public class RestBeanHttpMessageConverter extends AbstractHttpMessageConverter<RestBean<?>> {
+
+    public RestBeanHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return RestBean.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        // 只用于写出响应，请求体仍由默认的转换器读取
+        return false;
+    }
+
+    @Override
+    @NonNull
+    protected RestBean<?> readInternal(@NonNull Class<? extends RestBean<?>> clazz, @NonNull HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("RestBean is write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(@NonNull RestBean<?> bean, MediaType contentType) {
+        return bean.data() == null ? (long) bean.asJsonBytes().length : null;
+    }
+
+    @Override
+    protected void writeInternal(@NonNull RestBean<?> bean, @NonNull HttpOutputMessage outputMessage) throws IOException {
+        bean.writeTo(outputMessage.getBody());
+    }
+}
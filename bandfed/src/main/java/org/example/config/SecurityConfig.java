@@ -7,6 +7,7 @@ import org.example.entity.RestBean;
 import org.example.entity.dto.Account;
 import org.example.entity.vo.response.AuthorizeVO;
 import org.example.filter.JwtAuthenticationFilter;
+import org.example.filter.LoginMetricsFilter;
 import org.example.service.AccountService;
 import org.example.utils.JwtUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,7 +24,6 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 
 @Configuration
 public class SecurityConfig {
@@ -33,6 +33,9 @@ public class SecurityConfig {
     @Resource
     JwtAuthenticationFilter filter;
 
+    @Resource
+    LoginMetricsFilter loginMetricsFilter;
+
     @Resource
     AccountService service;
 
@@ -41,6 +44,8 @@ public class SecurityConfig {
          return http
                 .authorizeHttpRequests(conf -> conf
                         .requestMatchers("/api/auth/**").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/admin/**").hasRole("ADMIN") // 基于角色的访问控制
                         .anyRequest().authenticated()
                 )
@@ -58,6 +63,7 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(conf ->conf
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(loginMetricsFilter, UsernamePasswordAuthenticationFilter.class)
                 .addFilterBefore(filter, UsernamePasswordAuthenticationFilter.class)
                 .build();
     }
@@ -74,18 +80,14 @@ public class SecurityConfig {
     public void onAuthenticationFailure(HttpServletRequest request,
                                         HttpServletResponse response,
                                         AuthenticationException exception) throws IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        response.getWriter().write(RestBean.unauthorized(exception.getMessage()).asJsonString());
+        writeJson(response, RestBean.unauthorized(exception.getMessage()));
     }
 
     public void onAuthenticationSuccess(HttpServletRequest request,
                                         HttpServletResponse response,
                                         Authentication authentication) throws IOException
     {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-
+        request.setAttribute(LoginMetricsFilter.SUCCESS, Boolean.TRUE);
         User user = (User) authentication.getPrincipal();
         Account account =  service.findAccountByNameOrEmail(user.getUsername());
         String token = jwtUtils.createJwt(user,account.getUid(),user.getUsername());
@@ -94,22 +96,19 @@ public class SecurityConfig {
             v.setToken(token);
             v.setUsername(account.getUsername());
         });
-        response.getWriter().write(RestBean.success(vo).asJsonString());
+        writeJson(response, RestBean.success(vo));
     }
 
     private void onLogoutSuccess(HttpServletRequest request,
                                  HttpServletResponse response,
                                  Authentication authentication) throws IOException
     {
-            response.setContentType("application/json");
-            response.setCharacterEncoding("UTF-8");
-            PrintWriter writer = response.getWriter();
-            String authorization = request.getHeader("Authorization");
-            if (jwtUtils.invalidateJwt(authorization)){
-                writer.write(RestBean.success().asJsonString());
-            }else {
-                writer.write(RestBean.failure(400,"注销失败").asJsonString());
-            }
+        String authorization = request.getHeader("Authorization");
+        if (jwtUtils.invalidateJwt(authorization)){
+            writeJson(response, RestBean.success());
+        }else {
+            writeJson(response, RestBean.failure(400,"注销失败"));
+        }
     }
 
 
@@ -125,9 +124,7 @@ public class SecurityConfig {
     public void onUnauthorized(HttpServletRequest request,
                                HttpServletResponse response,
                                AuthenticationException exception) throws IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        response.getWriter().write(RestBean.unauthorized(exception.getMessage()).asJsonString());
+        writeJson(response, RestBean.unauthorized(exception.getMessage()));
     }
 
     /**
@@ -142,9 +139,24 @@ public class SecurityConfig {
     public void onAccessDeny(HttpServletRequest request,
                              HttpServletResponse response,
                              AccessDeniedException exception) throws IOException{
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        response.getWriter().write(RestBean.forbidden(exception.getMessage()).asJsonString());
+        writeJson(response, RestBean.forbidden(exception.getMessage()));
+    }
 
+    /**
+     * 以 UTF-8 JSON 写出响应，直接写入输出流，不带数据的响应使用缓存的编码结果
+     *
+     * @param response HttpServletResponse 对象
+     * @param bean 响应内容
+     * @throws IOException 写入失败
+     */
+    private static void writeJson(HttpServletResponse response, RestBean<?> bean) throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        if (bean.data() == null) {
+            byte[] body = bean.asJsonBytes();
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        } else {
+            bean.writeTo(response.getOutputStream());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package org.example.controller;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.example.entity.RestBean;
+import org.example.entity.dto.Message;
+import org.example.entity.vo.response.MessageVO;
+import org.example.service.MessageService;
+import org.example.service.RoomService;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+
+@Slf4j
+@Controller
+@RequestMapping("/api/message")
+public class MessageController {
+
+    // 单页最多返回的条数
+    private static final int MAX_PAGE_SIZE = 100;
+
+    @Resource
+    MessageService service;
+
+    // 群聊房间成员，与是否在线无关，集群中各节点共享
+    @Resource
+    RoomService rooms;
+
+    /**
+     * 查询会话历史，按消息 ID 倒序返回
+     *
+     * @param id 当前用户 ID，由 JWT 过滤器写入
+     * @param peer 私聊对方的用户 ID
+     * @param room 群聊房间 ID，只有房间成员可以查询，peer 和 room 都不传时查询广播消息
+     * @param before 上一页最后一条消息的 ID，不传时从最新一条开始
+     * @param size 每页条数
+     * @return 消息列表
+     */
+    @ResponseBody
+    @GetMapping("/history")
+    public RestBean<List<MessageVO>> history(@RequestAttribute("id") int id,
+                                             @RequestParam(required = false) Integer peer,
+                                             @RequestParam(required = false) Integer room,
+                                             @RequestParam(required = false) Long before,
+                                             @RequestParam(defaultValue = "20") int size) {
+        if (peer == null && room != null) {
+            boolean member;
+            try {
+                member = rooms.isMember(room, id);
+            } catch (RuntimeException e) {
+                log.warn("Failed to check membership of room {}: {}", room, e.getMessage());
+                return RestBean.failure(500, "Failed to check room membership");
+            }
+            if (!member) {
+                return RestBean.forbidden("Not a member of room " + room);
+            }
+        }
+        long conversationId = peer != null ? Message.conversationId(id, peer)
+                : room != null ? Message.roomConversationId(room) : 0;
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<MessageVO> messages = service.history(conversationId, before, limit).stream()
+                .map(message -> message.asViewObject(MessageVO.class))
+                .toList();
+        return RestBean.success(messages);
+    }
+}
@@ -1,13 +1,26 @@
 package org.example.entity;
 
+import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
 import com.alibaba.fastjson2.JSONWriter;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * 表示一个通用的响应对象，包含状态码、数据和消息。
  * 这个类用于统一处理 API 的响应，提供成功和失败的不同状态。
  */
 public record RestBean<T>(int code, T data, String message) {
+
+    // 不带数据的响应只由状态码和消息决定，编码结果缓存下来重复使用
+    private static final Map<RestBean<?>, byte[]> ENCODED = new ConcurrentHashMap<>();
+
+    // 缓存条目上限，防止消息中带有请求内容时无限增长
+    private static final int ENCODED_LIMIT = 256;
+
     /**
      * 创建一个成功响应，包含数据。
      *
@@ -145,4 +158,33 @@ public record RestBean<T>(int code, T data, String message) {
     public String asJsonString(){
         return JSONObject.toJSONString(this, JSONWriter.Feature.WriteNulls);
     }
+
+    /**
+     * 将 RestBean 实例编码为 UTF-8 JSON。不带数据的响应只编码一次，之后返回缓存的结果，调用方不能修改返回的数组
+     *
+     * @return UTF-8 编码的 JSON
+     */
+    public byte[] asJsonBytes(){
+        if (data != null) return JSON.toJSONBytes(this, JSONWriter.Feature.WriteNulls);
+        byte[] encoded = ENCODED.get(this);
+        if (encoded == null) {
+            encoded = JSON.toJSONBytes(this, JSONWriter.Feature.WriteNulls);
+            if (ENCODED.size() < ENCODED_LIMIT) ENCODED.putIfAbsent(this, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * 将 RestBean 实例以 UTF-8 JSON 直接写入输出流，不经过中间的字符串
+     *
+     * @param out 输出流
+     * @throws IOException 写入失败
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (data == null) {
+            out.write(asJsonBytes());
+        } else {
+            JSON.writeTo(out, this, JSONWriter.Feature.WriteNulls);
+        }
+    }
 }
@@ -0,0 +1,100 @@
+package org.example.entity;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 实体对象到视图对象的字段映射计划
+ * <p>
+ * 每对 (实体类, 视图类) 只在第一次转换时反射一次，把构造函数和同名字段的读写解析为 MethodHandle 并缓存在 ClassValue 中，
+ * 之后的转换只剩下句柄调用。只复制两边都声明、类型兼容的非静态字段，与原先按字段名复制的规则一致
+ */
+final class ViewMapping {
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+
+    // 实体类 -> 视图类 -> 映射计划
+    private static final ClassValue<ClassValue<ViewMapping>> PLANS = new ClassValue<>() {
+        @Override
+        protected ClassValue<ViewMapping> computeValue(Class<?> source) {
+            return new ClassValue<>() {
+                @Override
+                protected ViewMapping computeValue(Class<?> target) {
+                    return new ViewMapping(source, target);
+                }
+            };
+        }
+    };
+
+    private final MethodHandle constructor;
+
+    private final MethodHandle[] getters;
+
+    private final MethodHandle[] setters;
+
+    private ViewMapping(Class<?> source, Class<?> target) {
+        try {
+            MethodHandles.Lookup sourceLookup = MethodHandles.privateLookupIn(source, MethodHandles.lookup());
+            MethodHandles.Lookup targetLookup = MethodHandles.privateLookupIn(target, MethodHandles.lookup());
+            constructor = targetLookup.findConstructor(target, MethodType.methodType(void.class)).asType(CONSTRUCTOR);
+            Map<String, Field> sourceFields = new HashMap<>();
+            for (Field field : source.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) sourceFields.put(field.getName(), field);
+            }
+            List<MethodHandle> getters = new ArrayList<>();
+            List<MethodHandle> setters = new ArrayList<>();
+            for (Field field : target.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) continue;
+                Field from = sourceFields.get(field.getName());
+                if (from == null || !compatible(from.getType(), field.getType())) continue;
+                getters.add(sourceLookup.unreflectGetter(from).asType(GETTER));
+                setters.add(targetLookup.unreflectSetter(field).asType(SETTER));
+            }
+            this.getters = getters.toArray(MethodHandle[]::new);
+            this.setters = setters.toArray(MethodHandle[]::new);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot map " + source.getName() + " to " + target.getName(), e);
+        }
+    }
+
+    static ViewMapping of(Class<?> source, Class<?> target) {
+        return PLANS.get(source).get(target);
+    }
+
+    /**
+     * 创建视图对象并复制字段
+     *
+     * @param entity 实体对象
+     * @return 视图对象
+     */
+    Object map(Object entity) {
+        try {
+            Object view = (Object) constructor.invokeExact();
+            for (int i = 0; i < getters.length; i++) {
+                Object value = (Object) getters[i].invokeExact(entity);
+                setters[i].invokeExact(view, value);
+            }
+            return view;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean compatible(Class<?> from, Class<?> to) {
+        return MethodType.methodType(to).wrap().returnType()
+                .isAssignableFrom(MethodType.methodType(from).wrap().returnType());
+    }
+}
@@ -1,10 +1,25 @@
 package org.example.entity.dto;
 
+import com.alibaba.fastjson2.JSONWriter;
+import com.alibaba.fastjson2.annotation.JSONField;
 import lombok.Data;
+import lombok.experimental.Accessors;
 
 @Data
+@Accessors(chain = true)
 public class ChatMessage {
     private String type;
-    private String targetUserId;
+    private Integer targetUserId;
+    // 群聊房间 ID，仅 room/join/leave 消息携带
+    private Integer roomId;
+    // 发送者 ID，仅服务端下发的消息携带
+    private Integer fromUserId;
+    // 服务端分配的雪花 ID，超过 2^53，JSON 中以字符串输出，避免浏览器解析时丢失精度
+    @JSONField(serializeFeatures = JSONWriter.Feature.WriteLongAsString)
+    private Long messageId;
+    // 离线收件箱序号，每个用户单调递增
+    private Long seq;
+    // 会话内序号，每个会话单调递增，由服务端分配
+    private Long conversationSeq;
     private String content;
 }
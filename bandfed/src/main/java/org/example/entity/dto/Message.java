@@ -0,0 +1,54 @@
+package org.example.entity.dto;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import org.example.entity.BaseData;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName("messages")
+@Accessors(chain = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class Message implements BaseData {
+    // 服务端生成的雪花 ID，按时间递增
+    @TableId(type = IdType.INPUT)
+    private Long id;
+    // 会话 ID，私聊由双方 uid 组成，广播为 0，群聊为房间 ID 的相反数
+    private Long conversationId;
+    // 会话内序号，入队前按会话递增分配，与 ACK 和实时推送中的 conversationSeq 一致
+    private Long conversationSeq;
+    private Integer fromUid;
+    // 接收者，广播为 null
+    private Integer toUid;
+    private String type;
+    private String content;
+    private LocalDateTime createTime;
+
+    /**
+     * 计算两个用户之间私聊会话的 ID，与双方顺序无关
+     *
+     * @param a 用户 ID
+     * @param b 用户 ID
+     * @return 会话 ID
+     */
+    public static long conversationId(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    /**
+     * 计算群聊房间的会话 ID，取负数与私聊和广播区分
+     *
+     * @param roomId 房间 ID
+     * @return 会话 ID
+     */
+    public static long roomConversationId(int roomId) {
+        return -(long) roomId;
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.entity.dto;
+
+/**
+ * ChatMessage 的消息类型
+ */
+public final class MessageType {
+    // 私聊消息
+    public static final String PRIVATE = "private";
+    // 广播消息
+    public static final String BROADCAST = "broadcast";
+    // 群聊消息，发送给房间内的所有成员
+    public static final String ROOM = "room";
+    // 加入房间，服务端处理后原样回复
+    public static final String JOIN = "join";
+    // 离开房间，服务端处理后原样回复
+    public static final String LEAVE = "leave";
+    // 服务端通知
+    public static final String SYSTEM = "system";
+    // 错误提示
+    public static final String ERROR = "error";
+    // 客户端心跳
+    public static final String PING = "ping";
+    // 服务端对心跳的回复
+    public static final String PONG = "pong";
+    // 服务端确认消息已受理，携带分配的消息 ID 和会话内序号；
+    // 客户端发送时携带 seq，确认已收到该序号及之前的离线消息，
+    // 或携带 targetUserId 和 conversationSeq，确认已收到与该用户私聊中不大于该序号的消息
+    public static final String ACK = "ack";
+    // 客户端发送，表示已读与 targetUserId 私聊中不大于 conversationSeq 的消息
+    public static final String READ = "read";
+    // 服务端发给私聊发送者的回执，fromUserId 为接收者，content 为 delivered 或 read，
+    // conversationSeq 为已送达或已读的最大序号，同一会话的多条确认合并为一条
+    public static final String RECEIPT = "receipt";
+    // 订阅用户的在线状态，targetUserId 为被订阅的用户
+    public static final String SUBSCRIBE = "subscribe";
+    // 取消订阅
+    public static final String UNSUBSCRIBE = "unsubscribe";
+    // 在线状态变化通知，fromUserId 为状态变化的用户，content 为 online 或 offline
+    public static final String PRESENCE = "presence";
+    // 客户端请求补发 seq 之后的离线消息；服务端补发完毕后回复，携带最后一条的 seq
+    public static final String SYNC = "sync";
+
+    private MessageType() {
+    }
+}
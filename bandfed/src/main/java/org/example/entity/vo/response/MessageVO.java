@@ -0,0 +1,22 @@
+package org.example.entity.vo.response;
+
+import com.alibaba.fastjson2.JSONWriter;
+import com.alibaba.fastjson2.annotation.JSONField;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class MessageVO {
+    // 雪花 ID 超出 JavaScript 的安全整数范围，以字符串返回
+    @JSONField(serializeFeatures = JSONWriter.Feature.WriteLongAsString)
+    Long id;
+    // 会话内序号，客户端据此去重并与送达、已读回执对应
+    Long conversationSeq;
+    Integer fromUid;
+    Integer toUid;
+    String type;
+    String content;
+    @JSONField(format = "yyyy-MM-dd'T'HH:mm:ss")
+    LocalDateTime createTime;
+}
@@ -0,0 +1,64 @@
+package org.example.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录登录请求的耗时，包括账号查询、密码校验和签发令牌，按登录成功与否分别统计
+ */
+@Component
+public class LoginMetricsFilter extends OncePerRequestFilter {
+
+    /**
+     * 登录成功的处理器在请求上设置该属性
+     */
+    public static final String SUCCESS = LoginMetricsFilter.class.getName() + ".success";
+
+    private static final String LOGIN_PATH = "/api/auth/login";
+
+    private final Timer success;
+
+    private final Timer failure;
+
+    @Autowired
+    public LoginMetricsFilter(MeterRegistry registry) {
+        success = timer(registry, "success");
+        failure = timer(registry, "failure");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !LOGIN_PATH.equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Timer timer = request.getAttribute(SUCCESS) != null ? success : failure;
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer timer(MeterRegistry registry, String outcome) {
+        return Timer.builder("chat.login")
+                .description("Login request latency")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
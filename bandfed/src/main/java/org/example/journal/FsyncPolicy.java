@@ -0,0 +1,13 @@
+package org.example.journal;
+
+/**
+ * 日志刷盘策略
+ */
+public enum FsyncPolicy {
+    // 每条消息写入后立即刷盘，最安全也最慢
+    ALWAYS,
+    // 后台线程按固定间隔刷盘，宕机最多丢失一个间隔内的消息
+    INTERVAL,
+    // 交给操作系统决定何时刷盘，进程崩溃不丢消息，机器掉电可能丢失
+    NONE
+}
@@ -0,0 +1,294 @@
+package org.example.journal;
+
+import com.alibaba.fastjson2.JSON;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.entity.dto.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 基于内存映射文件的消息预写日志
+ * <p>
+ * 消息在进入异步写库队列之前先追加到日志，追加只是一次内存拷贝，不等待数据库。
+ * 日志由固定大小的段文件组成，每条记录为 [长度 4B][CRC32C 4B][消息 JSON]，长度为 0 表示段内数据结束。
+ * checkpoint 文件记录已写入 MySQL 的位置，启动时从该位置开始扫描，把尚未入库的消息重新交给写库线程，
+ * 写库使用 INSERT IGNORE，重复写入不会产生重复数据。
+ * <p>
+ * 位置用 long 表示：高 32 位为段序号，低 32 位为段内偏移。
+ */
+@Slf4j
+@Component
+public class MessageJournal {
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    @Value("${chat.journal.enabled:false}")
+    boolean enabled;
+
+    @Value("${chat.journal.dir:data/journal}")
+    String dir;
+
+    // 段文件大小，写满后切换到下一个段
+    @Value("${chat.journal.segment-size:67108864}")
+    int segmentSize;
+
+    // 刷盘策略：always、interval、none
+    @Value("${chat.journal.fsync:interval}")
+    String fsync;
+
+    @Value("${chat.journal.fsync-interval-millis:100}")
+    long fsyncIntervalMillis;
+
+    private FsyncPolicy policy;
+
+    private Path directory;
+
+    private MappedByteBuffer checkpoint;
+
+    // 已写入数据库的位置
+    private long committed;
+
+    // 当前写入的段
+    private int segmentIndex;
+
+    private MappedByteBuffer segment;
+
+    // 最早一个尚未删除的段
+    private int oldestSegment;
+
+    private boolean recovered;
+
+    private final CRC32C crc = new CRC32C();
+
+    private Thread flusher;
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) return;
+        policy = FsyncPolicy.valueOf(fsync.toUpperCase());
+        directory = Path.of(dir);
+        Files.createDirectories(directory);
+        checkpoint = map(directory.resolve(CHECKPOINT_FILE), Long.BYTES);
+        committed = checkpoint.getLong(0);
+        if (policy == FsyncPolicy.INTERVAL) {
+            flusher = new Thread(this::flushLoop, "journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws InterruptedException {
+        if (!enabled) return;
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join();
+        }
+        if (segment != null) segment.force();
+        checkpoint.force();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 扫描 checkpoint 之后的记录交给 consumer，并把写入位置定位到最后一条完整记录之后。
+     * 必须在第一次 append 之前调用一次
+     *
+     * @param consumer 接收尚未入库的消息及其结束位置
+     * @return 恢复的消息数
+     */
+    public synchronized int recover(BiConsumer<Message, Long> consumer) throws IOException {
+        if (!enabled || recovered) return 0;
+        List<Integer> segments = listSegments();
+        int start = segmentOf(committed);
+        int offset = offsetOf(committed);
+        if (segments.isEmpty() || start < segments.getFirst()) {
+            // checkpoint 所在的段已经不存在，从现存最早的段开始
+            start = segments.isEmpty() ? start : segments.getFirst();
+            offset = 0;
+        }
+        oldestSegment = segments.isEmpty() ? start : segments.getFirst();
+        int count = 0;
+        int last = segments.isEmpty() ? start : Math.max(start, segments.getLast());
+        for (int index = start; index <= last; index++) {
+            MappedByteBuffer buffer = map(segmentPath(index), segmentSize);
+            int position = index == start ? offset : 0;
+            while (position + HEADER_SIZE <= segmentSize) {
+                int length = buffer.getInt(position);
+                if (length == 0) break;
+                Message message = read(buffer, position, length);
+                if (message == null) {
+                    log.warn("Corrupted journal record at segment {} offset {}", index, position);
+                    // 最后一个段中是写入时崩溃留下的不完整记录，清除后从这里继续写
+                    if (index == last) zero(buffer, position);
+                    break;
+                }
+                position += HEADER_SIZE + length;
+                consumer.accept(message, position(index, position));
+                count++;
+            }
+            if (index == last) {
+                segmentIndex = index;
+                segment = buffer.position(position);
+            }
+        }
+        recovered = true;
+        return count;
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @param message 消息
+     * @return 记录的结束位置，写入数据库后用它提交 checkpoint
+     */
+    public synchronized long append(Message message) {
+        if (!recovered) {
+            throw new IllegalStateException("Journal must be recovered before appending");
+        }
+        byte[] payload = JSON.toJSONBytes(message);
+        int size = HEADER_SIZE + payload.length;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("Message of " + payload.length + " bytes exceeds journal segment size");
+        }
+        if (segment.position() + size > segmentSize) {
+            roll();
+        }
+        crc.reset();
+        crc.update(payload);
+        int start = segment.position();
+        // 先写正文和校验和，最后写长度，长度不为 0 的记录才会被扫描到
+        segment.position(start + 4);
+        segment.putInt((int) crc.getValue()).put(payload);
+        segment.putInt(start, payload.length);
+        if (policy == FsyncPolicy.ALWAYS) {
+            segment.force(start, size);
+        }
+        return position(segmentIndex, segment.position());
+    }
+
+    /**
+     * 记录 position 之前的消息都已写入数据库，并删除不再需要的段文件
+     *
+     * @param position append 返回的位置
+     */
+    public synchronized void commit(long position) {
+        if (position <= committed) return;
+        committed = position;
+        checkpoint.putLong(0, position);
+        if (policy == FsyncPolicy.ALWAYS) {
+            checkpoint.force();
+        }
+        int current = segmentOf(position);
+        for (; oldestSegment < current; oldestSegment++) {
+            try {
+                Files.deleteIfExists(segmentPath(oldestSegment));
+            } catch (IOException e) {
+                log.warn("Failed to delete journal segment {}: {}", oldestSegment, e.getMessage());
+            }
+        }
+    }
+
+    private void roll() {
+        if (policy != FsyncPolicy.NONE) {
+            segment.force();
+        }
+        try {
+            segment = map(segmentPath(++segmentIndex), segmentSize);
+        } catch (IOException e) {
+            segmentIndex--;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(fsyncIntervalMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+            MappedByteBuffer current;
+            synchronized (this) {
+                current = segment;
+            }
+            // 刷盘不持有锁，不阻塞追加
+            if (current != null) current.force();
+            checkpoint.force();
+        }
+    }
+
+    private Message read(MappedByteBuffer buffer, int position, int length) {
+        if (length < 0 || position + HEADER_SIZE + length > segmentSize) return null;
+        byte[] payload = new byte[length];
+        buffer.get(position + HEADER_SIZE, payload);
+        crc.reset();
+        crc.update(payload);
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) return null;
+        return JSON.parseObject(payload, Message.class);
+    }
+
+    private void zero(MappedByteBuffer buffer, int from) {
+        for (int i = from; i < segmentSize; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.force();
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%010d%s", index, SEGMENT_SUFFIX));
+    }
+
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 映射在通道关闭后依然有效
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static long position(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+}
@@ -2,11 +2,20 @@ package org.example.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.example.entity.dto.Account;
 
+import java.util.Collection;
+
 @Mapper
 public interface  AccountMapper extends BaseMapper<Account> {
     boolean existsByUsername(String username);
 
-    Account findAccountByNameOrEmail(String text);
+    Account findAccountByUsername(String username);
+
+    Account findAccountByEmail(String email);
+
+    int markOnline(@Param("uids") Collection<Integer> uids);
+
+    int markOffline(@Param("uids") Collection<Integer> uids);
 }
@@ -0,0 +1,17 @@
+package org.example.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.example.entity.dto.Message;
+
+import java.util.List;
+
+@Mapper
+public interface MessageMapper extends BaseMapper<Message> {
+    int insertBatch(@Param("list") List<Message> messages);
+
+    List<Message> findBefore(@Param("conversationId") long conversationId,
+                             @Param("before") long before,
+                             @Param("size") int size);
+}
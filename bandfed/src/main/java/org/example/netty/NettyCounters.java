@@ -0,0 +1,219 @@
+package org.example.netty;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WebSocket 服务端的运行计数，热路径上只做 LongAdder 累加
+ * <p>
+ * 绑定到 MeterRegistry 后，计数以 FunctionCounter/Gauge 的形式在采集时读取，不在热路径上经过 Micrometer。
+ * 只有每条广播一次的扇出统计直接记录到 Timer 和 DistributionSummary，绑定之前不记录
+ */
+@Component
+public class NettyCounters implements MeterBinder {
+
+    // 连接不可写时进入发送队列的消息数
+    private final LongAdder outboundQueued = new LongAdder();
+
+    // 当前暂存在各连接发送队列中的消息数
+    private final LongAdder outboundPending = new LongAdder();
+
+    // 发送队列已满时按 DROP 策略丢弃的消息数
+    private final LongAdder slowConsumerDropped = new LongAdder();
+
+    // 发送队列已满时按 DISCONNECT 策略断开的连接数
+    private final LongAdder slowConsumerDisconnected = new LongAdder();
+
+    // 连接变为不可写的次数
+    private final LongAdder unwritable = new LongAdder();
+
+    // 因读空闲超时被关闭的连接数
+    private final LongAdder sessionsReaped = new LongAdder();
+
+    // 收发的数据帧数和负载字节数，不含控制帧
+    private final LongAdder inboundFrames = new LongAdder();
+
+    private final LongAdder inboundBytes = new LongAdder();
+
+    private final LongAdder outboundFrames = new LongAdder();
+
+    private final LongAdder outboundBytes = new LongAdder();
+
+    // I/O 线程名 -> 该线程上已完成握手的连接数
+    private final Map<String, AtomicInteger> sessions = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry registry;
+
+    private volatile FanOut broadcastFanOut;
+
+    private volatile FanOut roomFanOut;
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        counter(registry, "chat.frames.inbound", "frames", inboundFrames);
+        counter(registry, "chat.frames.outbound", "frames", outboundFrames);
+        counter(registry, "chat.bytes.inbound", "bytes", inboundBytes);
+        counter(registry, "chat.bytes.outbound", "bytes", outboundBytes);
+        counter(registry, "chat.outbound.queued", "messages", outboundQueued);
+        counter(registry, "chat.outbound.dropped", "messages", slowConsumerDropped);
+        counter(registry, "chat.outbound.disconnected", "connections", slowConsumerDisconnected);
+        counter(registry, "chat.outbound.unwritable", "events", unwritable);
+        counter(registry, "chat.sessions.reaped", "connections", sessionsReaped);
+        Gauge.builder("chat.outbound.pending", outboundPending, LongAdder::sum)
+                .description("Messages waiting in per-connection outbound queues")
+                .baseUnit("messages")
+                .register(registry);
+        broadcastFanOut = new FanOut(registry, "broadcast");
+        roomFanOut = new FanOut(registry, "room");
+        this.registry = registry;
+        sessions.forEach((loop, count) -> sessionGauge(registry, loop, count));
+    }
+
+    public void outboundQueued() {
+        outboundQueued.increment();
+        outboundPending.increment();
+    }
+
+    /**
+     * 暂存的消息写出或丢弃
+     *
+     * @param count 离开发送队列的消息数
+     */
+    public void outboundDrained(int count) {
+        outboundPending.add(-count);
+    }
+
+    public void slowConsumerDropped() {
+        slowConsumerDropped.increment();
+    }
+
+    public void slowConsumerDisconnected() {
+        slowConsumerDisconnected.increment();
+    }
+
+    public void unwritable() {
+        unwritable.increment();
+    }
+
+    public void sessionReaped() {
+        sessionsReaped.increment();
+    }
+
+    public void inboundFrame(int bytes) {
+        inboundFrames.increment();
+        inboundBytes.add(bytes);
+    }
+
+    public void outboundFrame(int bytes) {
+        outboundFrames.increment();
+        outboundBytes.add(bytes);
+    }
+
+    /**
+     * WebSocket 握手完成，需在连接所在的 I/O 线程中调用
+     */
+    public void sessionOpened() {
+        sessions.computeIfAbsent(Thread.currentThread().getName(), this::newSessionCount).incrementAndGet();
+    }
+
+    /**
+     * 已完成握手的连接关闭，需在连接所在的 I/O 线程中调用
+     */
+    public void sessionClosed() {
+        AtomicInteger count = sessions.get(Thread.currentThread().getName());
+        if (count != null) count.decrementAndGet();
+    }
+
+    /**
+     * 记录一次本节点上的广播扇出
+     *
+     * @param receivers 写入的连接数
+     * @param nanos 编码并分发到各连接所用的时间
+     */
+    public void broadcastFanOut(int receivers, long nanos) {
+        FanOut fanOut = broadcastFanOut;
+        if (fanOut != null) fanOut.record(receivers, nanos);
+    }
+
+    /**
+     * 记录一次本节点上的群聊扇出
+     *
+     * @param receivers 写入的连接数
+     * @param nanos 编码并分发到各连接所用的时间
+     */
+    public void roomFanOut(int receivers, long nanos) {
+        FanOut fanOut = roomFanOut;
+        if (fanOut != null) fanOut.record(receivers, nanos);
+    }
+
+    public long getOutboundQueued() {
+        return outboundQueued.sum();
+    }
+
+    public long getSlowConsumerDropped() {
+        return slowConsumerDropped.sum();
+    }
+
+    public long getSlowConsumerDisconnected() {
+        return slowConsumerDisconnected.sum();
+    }
+
+    public long getUnwritable() {
+        return unwritable.sum();
+    }
+
+    public long getSessionsReaped() {
+        return sessionsReaped.sum();
+    }
+
+    private AtomicInteger newSessionCount(String loop) {
+        AtomicInteger count = new AtomicInteger();
+        MeterRegistry current = registry;
+        if (current != null) sessionGauge(current, loop, count);
+        return count;
+    }
+
+    private static void sessionGauge(MeterRegistry registry, String loop, AtomicInteger count) {
+        Gauge.builder("chat.sessions.active", count, AtomicInteger::get)
+                .description("WebSocket sessions per event loop")
+                .tag("loop", loop)
+                .register(registry);
+    }
+
+    private static void counter(MeterRegistry registry, String name, String unit, LongAdder adder) {
+        FunctionCounter.builder(name, adder, LongAdder::sum)
+                .baseUnit(unit)
+                .register(registry);
+    }
+
+    private record FanOut(DistributionSummary size, Timer duration) {
+
+        FanOut(MeterRegistry registry, String type) {
+            this(DistributionSummary.builder("chat.fanout.size")
+                            .description("Connections written per fan-out")
+                            .tag("type", type)
+                            .register(registry),
+                    Timer.builder("chat.fanout.duration")
+                            .description("Time to encode and dispatch a fan-out")
+                            .tag("type", type)
+                            .register(registry));
+        }
+
+        void record(int receivers, long nanos) {
+            size.record(receivers);
+            duration.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
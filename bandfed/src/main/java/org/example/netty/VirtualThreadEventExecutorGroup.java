@@ -0,0 +1,195 @@
+package org.example.netty;
+
+import io.netty.util.concurrent.AbstractEventExecutor;
+import io.netty.util.concurrent.AbstractEventExecutorGroup;
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.OrderedEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 每个任务一个虚拟线程的业务执行器组，保证同一连接上的任务按顺序执行
+ * <p>
+ * 流水线为每个连接调用一次 {@link #next()}，得到该连接专属的有序执行器：任务先进入连接自己的队列，
+ * 队列非空时提交一个虚拟线程依次执行，执行完一批后归还。一个连接上的阻塞调用只挂起它自己的虚拟线程，
+ * 不会像 DefaultEventExecutorGroup 那样卡住固定在同一个执行器上的其他连接。
+ * <p>
+ * 只支持 execute，不支持定时任务；业务处理器中的定时任务应交给连接所在的 I/O 线程。
+ */
+public class VirtualThreadEventExecutorGroup extends AbstractEventExecutorGroup {
+
+    // 每次占用虚拟线程最多执行的任务数，之后重新提交，避免一个繁忙的连接一直占着载体线程
+    private static final int MAX_TASKS_PER_RUN = 1024;
+
+    private final ExecutorService threads;
+
+    private final Promise<?> termination = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+
+    /**
+     * @param name 虚拟线程名前缀
+     */
+    public VirtualThreadEventExecutorGroup(String name) {
+        threads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    @Override
+    public EventExecutor next() {
+        return new OrderedExecutor();
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        // 每个连接的执行器不在组内登记
+        return Collections.emptyIterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return threads.isShutdown();
+    }
+
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        threads.shutdown();
+        Thread.ofVirtual().name("chat-business-shutdown").start(() -> {
+            try {
+                threads.awaitTermination(timeout, unit);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            termination.trySuccess(null);
+        });
+        return termination;
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return termination;
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        threads.shutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return threads.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return threads.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return threads.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * 单个连接的有序执行器，同一时刻最多有一个虚拟线程在执行它的任务
+     */
+    private final class OrderedExecutor extends AbstractEventExecutor implements OrderedEventExecutor {
+
+        private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
+
+        // 是否已有虚拟线程在执行或等待执行本队列
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        // 正在执行本队列的线程，用于 inEventLoop 判断
+        private volatile Thread thread;
+
+        OrderedExecutor() {
+            super(VirtualThreadEventExecutorGroup.this);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.offer(task);
+            if (running.compareAndSet(false, true)) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            try {
+                threads.execute(this::run);
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+                throw e;
+            }
+        }
+
+        private void run() {
+            thread = Thread.currentThread();
+            try {
+                for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) break;
+                    safeExecute(task);
+                }
+            } finally {
+                thread = null;
+                running.set(false);
+            }
+            // 退出前又有新任务入队，或者本批未执行完
+            if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+                submit();
+            }
+        }
+
+        @Override
+        public boolean inEventLoop(Thread thread) {
+            return thread == this.thread;
+        }
+
+        @Override
+        public boolean isShuttingDown() {
+            return VirtualThreadEventExecutorGroup.this.isShuttingDown();
+        }
+
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            return terminationFuture();
+        }
+
+        @Override
+        public Future<?> terminationFuture() {
+            return termination;
+        }
+
+        @Override
+        @Deprecated
+        public void shutdown() {
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return VirtualThreadEventExecutorGroup.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return VirtualThreadEventExecutorGroup.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return VirtualThreadEventExecutorGroup.this.awaitTermination(timeout, unit);
+        }
+    }
+}
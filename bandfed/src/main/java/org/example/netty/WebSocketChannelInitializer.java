@@ -5,28 +5,205 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolConfig;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.example.cluster.ClusterRouter;
+import org.example.netty.codec.ChatFrameCodec;
+import org.example.netty.codec.DeflateExtensionHandshaker;
+import org.example.netty.codec.WireFormat;
+import org.example.netty.handler.DeliveryTrackingHandler;
+import org.example.netty.handler.FrameMetricsHandler;
+import org.example.netty.handler.HeartbeatHandler;
+import org.example.netty.handler.OutboundBufferHandler;
+import org.example.netty.handler.SlowConsumerPolicy;
+import org.example.netty.handler.WebSocketAuthHandler;
 import org.example.netty.handler.WebSocketMessageHandler;
+import org.example.netty.session.RoomRegistry;
+import org.example.netty.session.SessionRegistry;
+import org.example.service.DeliveryService;
+import org.example.service.InboxService;
+import org.example.service.MessageService;
+import org.example.service.PresenceService;
+import org.example.service.RoomService;
 import org.example.utils.JwtUtils;
+import org.example.utils.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+
+@Component
 public class WebSocketChannelInitializer extends ChannelInitializer<SocketChannel> {
 
-    private final JwtUtils jwtUtils;
+    private static final String WEBSOCKET_PATH = "/ws";
+
+    @Resource
+    private JwtUtils jwtUtils;
+
+    @Resource
+    private SessionRegistry sessions;
+
+    @Resource
+    private RoomRegistry rooms;
+
+    @Resource
+    private RoomService roomService;
+
+    @Resource
+    private NettyCounters counters;
+
+    @Resource
+    private MessageService messageService;
+
+    @Resource
+    private SnowflakeIdGenerator idGenerator;
+
+    @Resource
+    private InboxService inboxService;
+
+    @Resource
+    private ClusterRouter clusterRouter;
+
+    @Resource
+    private PresenceService presenceService;
+
+    @Resource
+    private DeliveryService deliveryService;
+
+    // 补发离线消息时每页的条数
+    @Value("${chat.inbox.sync-page-size:100}")
+    private int syncPageSize;
+
+    // 是否允许客户端通过子协议 chat.bin 使用二进制协议
+    @Value("${netty.binary-protocol:true}")
+    private boolean binaryProtocol;
+
+    // 连接不可写时最多暂存的出站消息数
+    @Value("${netty.outbound.max-queued:256}")
+    private int maxQueued;
+
+    // 暂存队列满时的处理策略：drop 丢弃消息，disconnect 断开连接
+    @Value("${netty.outbound.slow-consumer-policy:drop}")
+    private String slowConsumerPolicy;
+
+    // 合并多少次 flush 后才真正写 socket，0 表示不合并
+    @Value("${netty.outbound.flush-consolidation:256}")
+    private int flushConsolidation;
+
+    // 是否协商 permessage-deflate 压缩
+    @Value("${netty.compression.enabled:false}")
+    private boolean compression;
+
+    @Value("${netty.compression.level:6}")
+    private int compressionLevel;
+
+    // 小于该字节数的帧不压缩
+    @Value("${netty.compression.threshold:1024}")
+    private int compressionThreshold;
+
+    // 低内存模式：不保留压缩上下文，限制客户端窗口
+    @Value("${netty.compression.low-memory:false}")
+    private boolean compressionLowMemory;
+
+    // 业务处理线程数，0 表示直接在 I/O 线程中执行
+    @Value("${netty.business.threads:32}")
+    private int businessThreads;
+
+    // 每个任务使用一个虚拟线程执行，同一连接仍按顺序处理，此时忽略业务处理线程数
+    @Value("${netty.business.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    // 超过该时间没有收到任何数据则关闭连接
+    @Value("${netty.heartbeat.reader-idle-seconds:90}")
+    private int readerIdleSeconds;
+
+    // 超过该时间没有写出数据则发送 Ping
+    @Value("${netty.heartbeat.writer-idle-seconds:30}")
+    private int writerIdleSeconds;
+
+    private SlowConsumerPolicy policy;
+
+    // 业务处理器所在的执行器组，同一连接固定由组内同一个执行器处理，保证消息顺序
+    private EventExecutorGroup businessGroup;
+
+    private DeflateExtensionHandshaker deflateHandshaker;
+
+    private WebSocketServerProtocolConfig protocolConfig;
+
+    @PostConstruct
+    public void init() {
+        // JSON 排在前面，客户端未指定子协议时也使用 JSON
+        String subprotocols = binaryProtocol
+                ? WireFormat.JSON.subprotocol() + "," + WireFormat.BINARY.subprotocol()
+                : WireFormat.JSON.subprotocol();
+        protocolConfig = WebSocketServerProtocolConfig.newBuilder()
+                .websocketPath(WEBSOCKET_PATH)
+                .subprotocols(subprotocols)
+                // 压缩扩展需要允许 RSV1 位
+                .allowExtensions(compression)
+                .build();
+        policy = SlowConsumerPolicy.valueOf(slowConsumerPolicy.toUpperCase());
+        if (compression) {
+            deflateHandshaker = new DeflateExtensionHandshaker(compressionLevel, compressionThreshold, compressionLowMemory);
+        }
+        if (virtualThreads) {
+            // 一个连接上的阻塞调用只挂起该连接的虚拟线程
+            businessGroup = new VirtualThreadEventExecutorGroup("chat-business");
+        } else if (businessThreads > 0) {
+            businessGroup = new DefaultEventExecutorGroup(businessThreads, new DefaultThreadFactory("chat-business"));
+        }
+    }
 
-    public WebSocketChannelInitializer(JwtUtils jwtUtils) {
-        this.jwtUtils = jwtUtils;
+    @PreDestroy
+    public void destroy() {
+        if (businessGroup != null) {
+            businessGroup.shutdownGracefully();
+        }
     }
 
     @Override
     protected void initChannel(SocketChannel ch) {
         ChannelPipeline pipeline = ch.pipeline();
+        if (flushConsolidation > 0) {
+            // 突发消息时合并 flush，减少系统调用
+            pipeline.addLast(new FlushConsolidationHandler(flushConsolidation, true));
+        }
+        // 空闲检测，放在靠前的位置以便看到所有读写
+        pipeline.addLast(new IdleStateHandler(readerIdleSeconds, writerIdleSeconds, 0, TimeUnit.SECONDS));
         // HTTP 编解码
         pipeline.addLast(new HttpServerCodec());
         // 添加HTTP对象聚合器，用于将HTTP消息的多个部分聚合成一个完整的消息
         pipeline.addLast(new HttpObjectAggregator(65536));
+        // 升级请求阶段校验 JWT，失败返回 401
+        pipeline.addLast(businessGroup, "auth", new WebSocketAuthHandler(jwtUtils, WEBSOCKET_PATH));
+        if (deflateHandshaker != null) {
+            // permessage-deflate 压缩扩展
+            pipeline.addLast(new WebSocketServerExtensionHandler(deflateHandshaker));
+        }
         // WebSocket 协议处理器
-        pipeline.addLast(new WebSocketServerProtocolHandler("/ws"));
+        pipeline.addLast(new WebSocketServerProtocolHandler(protocolConfig));
+        // 心跳：写空闲时发送 Ping，读空闲时关闭半开连接
+        pipeline.addLast(new HeartbeatHandler(counters));
+        // 出站背压，连接不可写时暂存消息，慢消费者按策略处理
+        pipeline.addLast(new OutboundBufferHandler(maxQueued, policy, counters));
+        // 帧数、字节数和每个 I/O 线程上的会话数
+        pipeline.addLast(new FrameMetricsHandler(counters));
+        // 以下处理器在业务执行器中运行，I/O 线程只负责分帧和写出
+        // 按协商的子协议在 WebSocket 帧与 ChatMessage 之间转换
+        pipeline.addLast(businessGroup, "codec", new ChatFrameCodec());
+        // 登记写给本连接的实时私聊消息，等待客户端确认
+        pipeline.addLast(businessGroup, "delivery", new DeliveryTrackingHandler(deliveryService));
         // 业务处理器
-        pipeline.addLast(new WebSocketMessageHandler(jwtUtils));
+        pipeline.addLast(businessGroup, "handler", new WebSocketMessageHandler(sessions, messageService, idGenerator,
+                inboxService, rooms, roomService, clusterRouter, presenceService, deliveryService, syncPageSize));
     }
 }
@@ -0,0 +1,182 @@
+package org.example.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 紧凑二进制协议
+ * <pre>
+ * +---------+--------------+---------------+-------------------+---------------+---------------------+-----------------+------------+
+ * | 类型 1B | uid (varint) | 房间 (varint) | 消息 ID (varlong) | seq (varlong) | 会话序号 (varlong)  | 正文长度 varint | 正文 UTF-8 |
+ * +---------+--------------+---------------+-------------------+---------------+---------------------+-----------------+------------+
+ * </pre>
+ * 客户端发送时 uid 为目标用户，服务端下发时 uid 为发送者；消息 ID 由服务端分配，seq 为离线收件箱序号，
+ * 会话序号为会话内的单调递增序号，0 表示没有
+ */
+public class BinaryChatCodec implements ChatCodec {
+
+    static final byte TAG_PRIVATE = 1;
+    static final byte TAG_BROADCAST = 2;
+    static final byte TAG_SYSTEM = 3;
+    static final byte TAG_ERROR = 4;
+    static final byte TAG_PING = 5;
+    static final byte TAG_PONG = 6;
+    static final byte TAG_ACK = 7;
+    static final byte TAG_SYNC = 8;
+    static final byte TAG_ROOM = 9;
+    static final byte TAG_JOIN = 10;
+    static final byte TAG_LEAVE = 11;
+    static final byte TAG_SUBSCRIBE = 12;
+    static final byte TAG_UNSUBSCRIBE = 13;
+    static final byte TAG_PRESENCE = 14;
+    static final byte TAG_READ = 15;
+    static final byte TAG_RECEIPT = 16;
+
+    @Override
+    public ChatMessage decode(WebSocketFrame frame) {
+        if (!(frame instanceof BinaryWebSocketFrame)) {
+            throw new CorruptedFrameException("Binary protocol expects binary frames");
+        }
+        ByteBuf in = frame.content();
+        ChatMessage message = new ChatMessage().setType(typeOf(in.readByte()));
+        int uid = readVarint(in);
+        if (uid != 0) {
+            message.setTargetUserId(uid);
+        }
+        int room = readVarint(in);
+        if (room != 0) {
+            message.setRoomId(room);
+        }
+        long messageId = readVarlong(in);
+        if (messageId != 0) {
+            message.setMessageId(messageId);
+        }
+        long seq = readVarlong(in);
+        if (seq != 0) {
+            message.setSeq(seq);
+        }
+        long conversationSeq = readVarlong(in);
+        if (conversationSeq != 0) {
+            message.setConversationSeq(conversationSeq);
+        }
+        int length = readVarint(in);
+        if (length > in.readableBytes()) {
+            throw new CorruptedFrameException("Body length " + length + " exceeds frame size");
+        }
+        message.setContent(in.readCharSequence(length, StandardCharsets.UTF_8).toString());
+        return message;
+    }
+
+    @Override
+    public WebSocketFrame encode(ByteBufAllocator alloc, ChatMessage message) {
+        String content = message.getContent() == null ? "" : message.getContent();
+        int length = ByteBufUtil.utf8Bytes(content);
+        Integer from = message.getFromUserId();
+        Long messageId = message.getMessageId();
+        Integer room = message.getRoomId();
+        Long seq = message.getSeq();
+        Long conversationSeq = message.getConversationSeq();
+        ByteBuf out = alloc.buffer(1 + 5 + 5 + 10 + 10 + 10 + 5 + length);
+        out.writeByte(tagOf(message.getType()));
+        writeVarint(out, from == null ? 0 : from);
+        writeVarint(out, room == null ? 0 : room);
+        writeVarlong(out, messageId == null ? 0 : messageId);
+        writeVarlong(out, seq == null ? 0 : seq);
+        writeVarlong(out, conversationSeq == null ? 0 : conversationSeq);
+        writeVarint(out, length);
+        out.writeCharSequence(content, StandardCharsets.UTF_8);
+        return new BinaryWebSocketFrame(out);
+    }
+
+    private static String typeOf(byte tag) {
+        return switch (tag) {
+            case TAG_PRIVATE -> MessageType.PRIVATE;
+            case TAG_BROADCAST -> MessageType.BROADCAST;
+            case TAG_SYSTEM -> MessageType.SYSTEM;
+            case TAG_ERROR -> MessageType.ERROR;
+            case TAG_PING -> MessageType.PING;
+            case TAG_PONG -> MessageType.PONG;
+            case TAG_ACK -> MessageType.ACK;
+            case TAG_SYNC -> MessageType.SYNC;
+            case TAG_ROOM -> MessageType.ROOM;
+            case TAG_JOIN -> MessageType.JOIN;
+            case TAG_LEAVE -> MessageType.LEAVE;
+            case TAG_SUBSCRIBE -> MessageType.SUBSCRIBE;
+            case TAG_UNSUBSCRIBE -> MessageType.UNSUBSCRIBE;
+            case TAG_PRESENCE -> MessageType.PRESENCE;
+            case TAG_READ -> MessageType.READ;
+            case TAG_RECEIPT -> MessageType.RECEIPT;
+            default -> throw new CorruptedFrameException("Unknown message tag " + tag);
+        };
+    }
+
+    private static byte tagOf(String type) {
+        return switch (type) {
+            case MessageType.PRIVATE -> TAG_PRIVATE;
+            case MessageType.BROADCAST -> TAG_BROADCAST;
+            case MessageType.SYSTEM -> TAG_SYSTEM;
+            case MessageType.ERROR -> TAG_ERROR;
+            case MessageType.PING -> TAG_PING;
+            case MessageType.PONG -> TAG_PONG;
+            case MessageType.ACK -> TAG_ACK;
+            case MessageType.SYNC -> TAG_SYNC;
+            case MessageType.ROOM -> TAG_ROOM;
+            case MessageType.JOIN -> TAG_JOIN;
+            case MessageType.LEAVE -> TAG_LEAVE;
+            case MessageType.SUBSCRIBE -> TAG_SUBSCRIBE;
+            case MessageType.UNSUBSCRIBE -> TAG_UNSUBSCRIBE;
+            case MessageType.PRESENCE -> TAG_PRESENCE;
+            case MessageType.READ -> TAG_READ;
+            case MessageType.RECEIPT -> TAG_RECEIPT;
+            default -> throw new IllegalArgumentException("Unknown message type " + type);
+        };
+    }
+
+    static int readVarint(ByteBuf in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("Malformed varint");
+    }
+
+    static void writeVarint(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static long readVarlong(ByteBuf in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("Malformed varlong");
+    }
+
+    static void writeVarlong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.netty.codec;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.example.entity.dto.ChatMessage;
+
+/**
+ * ChatMessage 与 WebSocket 帧之间的编解码
+ */
+public interface ChatCodec {
+
+    /**
+     * 将客户端发送的帧解码为消息
+     *
+     * @param frame 数据帧，由调用方负责释放
+     * @return 解码后的消息
+     */
+    ChatMessage decode(WebSocketFrame frame);
+
+    /**
+     * 将消息编码为发送给客户端的帧
+     *
+     * @param alloc   缓冲区分配器
+     * @param message 消息
+     * @return 编码后的帧
+     */
+    WebSocketFrame encode(ByteBufAllocator alloc, ChatMessage message);
+}
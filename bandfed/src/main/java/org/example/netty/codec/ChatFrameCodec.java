@@ -0,0 +1,50 @@
+package org.example.netty.codec;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.util.AttributeKey;
+import org.example.entity.dto.ChatMessage;
+
+import java.util.List;
+
+/**
+ * 在 WebSocket 帧与 ChatMessage 之间转换，握手完成后按选中的子协议切换编解码方式
+ */
+public class ChatFrameCodec extends MessageToMessageCodec<WebSocketFrame, ChatMessage> {
+
+    /**
+     * 连接协商出的消息格式
+     */
+    public static final AttributeKey<WireFormat> FORMAT = AttributeKey.valueOf("wireFormat");
+
+    private WireFormat format = WireFormat.JSON;
+
+    @Override
+    public boolean acceptInboundMessage(Object msg) {
+        // 只处理数据帧，控制帧由 WebSocketServerProtocolHandler 处理
+        return msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete handshake) {
+            format = WireFormat.of(handshake.selectedSubprotocol());
+            ctx.channel().attr(FORMAT).set(format);
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, WebSocketFrame frame, List<Object> out) {
+        out.add(format.codec().decode(frame));
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ChatMessage message, List<Object> out) {
+        out.add(format.codec().encode(ctx.alloc(), message));
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.netty.codec;
+
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * permessage-deflate 扩展协商
+ * <p>
+ * 小于阈值的帧不压缩，聊天短消息不值得花 CPU 和压缩头；
+ * 低内存模式下双方都不保留压缩上下文：服务端声明 server_no_context_takeover，并要求客户端 client_no_context_takeover
+ * （RFC 7692 允许服务端在客户端未提出时单方面加入这两个参数），每条消息结束后即释放服务端的 deflater 和 inflater，
+ * 连接空闲时不占用压缩内存。
+ * <p>
+ * JDK 的 Deflater/Inflater 只支持 32K 窗口，更小的服务端窗口需要 JZlib，因此不接受客户端提出的 server_max_window_bits，
+ * 提出该参数的客户端不启用压缩；限制客户端窗口也不会减少服务端 inflater 的内存，所以不要求 client_max_window_bits。
+ */
+public class DeflateExtensionHandshaker implements WebSocketServerExtensionHandshaker {
+
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private static final String SERVER_NO_CONTEXT = "server_no_context_takeover";
+
+    private static final String CLIENT_NO_CONTEXT = "client_no_context_takeover";
+
+    private final PerMessageDeflateServerExtensionHandshaker delegate;
+
+    private final boolean lowMemory;
+
+    /**
+     * @param level     压缩级别 0-9
+     * @param threshold 小于该字节数的帧不压缩
+     * @param lowMemory 是否启用低内存模式
+     */
+    public DeflateExtensionHandshaker(int level, int threshold, boolean lowMemory) {
+        this.lowMemory = lowMemory;
+        WebSocketExtensionFilter skipSmallFrames = frame -> frame.content().readableBytes() < threshold;
+        WebSocketExtensionFilterProvider filters = new WebSocketExtensionFilterProvider() {
+            @Override
+            public WebSocketExtensionFilter encoderFilter() {
+                return skipSmallFrames;
+            }
+
+            @Override
+            public WebSocketExtensionFilter decoderFilter() {
+                return WebSocketExtensionFilter.NEVER_SKIP;
+            }
+        };
+        this.delegate = new PerMessageDeflateServerExtensionHandshaker(
+                level,
+                // JDK zlib 只支持最大窗口，不接受客户端限制服务端窗口
+                false,
+                PerMessageDeflateServerExtensionHandshaker.MAX_WINDOW_SIZE,
+                true,
+                // 低内存模式下客户端也不保留上下文，服务端每条消息后释放 inflater
+                lowMemory,
+                filters);
+    }
+
+    @Override
+    public WebSocketServerExtension handshakeExtension(WebSocketExtensionData extensionData) {
+        if (lowMemory && PERMESSAGE_DEFLATE.equals(extensionData.name())
+                && !(extensionData.parameters().containsKey(SERVER_NO_CONTEXT)
+                && extensionData.parameters().containsKey(CLIENT_NO_CONTEXT))) {
+            Map<String, String> parameters = new HashMap<>(extensionData.parameters());
+            parameters.put(SERVER_NO_CONTEXT, null);
+            parameters.put(CLIENT_NO_CONTEXT, null);
+            extensionData = new WebSocketExtensionData(extensionData.name(), parameters);
+        }
+        return delegate.handshakeExtension(extensionData);
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.netty.codec;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.example.entity.dto.ChatMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 默认的 JSON 文本协议
+ * <p>
+ * 解码时直接从帧的 UTF-8 字节解析，不先转换成 String：堆内缓冲区直接解析其底层数组，
+ * 直接内存缓冲区先拷贝到线程内复用的数组。编码时由 fastjson2 写入其缓存的字节数组，再一次性拷贝到分配器给出的缓冲区
+ */
+public class JsonChatCodec implements ChatCodec {
+
+    // 线程内复用的解码数组，大小随帧增长，上限为 HTTP 聚合器允许的最大帧
+    private static final FastThreadLocal<byte[]> SCRATCH = new FastThreadLocal<>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[1024];
+        }
+    };
+
+    @Override
+    public ChatMessage decode(WebSocketFrame frame) {
+        if (!(frame instanceof TextWebSocketFrame)) {
+            throw new CorruptedFrameException("JSON protocol expects text frames");
+        }
+        ByteBuf content = frame.content();
+        int length = content.readableBytes();
+        if (content.hasArray()) {
+            return JSON.parseObject(content.array(), content.arrayOffset() + content.readerIndex(), length,
+                    StandardCharsets.UTF_8, ChatMessage.class);
+        }
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        content.getBytes(content.readerIndex(), scratch, 0, length);
+        return JSON.parseObject(scratch, 0, length, StandardCharsets.UTF_8, ChatMessage.class);
+    }
+
+    @Override
+    public WebSocketFrame encode(ByteBufAllocator alloc, ChatMessage message) {
+        try (JSONWriter writer = JSONWriter.ofUTF8()) {
+            writer.writeAny(message);
+            ByteBuf buffer = alloc.buffer(writer.size());
+            try {
+                writer.flushTo(new ByteBufOutputStream(buffer));
+            } catch (IOException | RuntimeException e) {
+                buffer.release();
+                throw new EncoderException(e);
+            }
+            return new TextWebSocketFrame(buffer);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.netty.codec;
+
+/**
+ * 通过 WebSocket 子协议协商的消息格式
+ */
+public enum WireFormat {
+    JSON("chat.json", new JsonChatCodec()),
+    BINARY("chat.bin", new BinaryChatCodec());
+
+    private final String subprotocol;
+
+    private final ChatCodec codec;
+
+    WireFormat(String subprotocol, ChatCodec codec) {
+        this.subprotocol = subprotocol;
+        this.codec = codec;
+    }
+
+    public String subprotocol() {
+        return subprotocol;
+    }
+
+    public ChatCodec codec() {
+        return codec;
+    }
+
+    /**
+     * 根据握手选中的子协议确定消息格式，未协商子协议时使用 JSON
+     *
+     * @param subprotocol 握手选中的子协议，可能为 null
+     * @return 消息格式
+     */
+    public static WireFormat of(String subprotocol) {
+        return BINARY.subprotocol.equals(subprotocol) ? BINARY : JSON;
+    }
+}
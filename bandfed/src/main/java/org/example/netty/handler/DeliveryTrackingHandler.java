@@ -0,0 +1,41 @@
+package org.example.netty.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.example.netty.session.SessionRegistry;
+import org.example.service.DeliveryService;
+
+/**
+ * 把写给本连接的实时私聊消息登记到接收者的未确认窗口
+ * <p>
+ * 位于 ChatFrameCodec 与业务处理器之间，与业务处理器在同一个执行器中运行，断开时的窗口清理排在所有已写出的消息之后。
+ * 从离线收件箱补发的消息带有 seq，由收件箱自己的确认机制处理，不重复登记
+ */
+public class DeliveryTrackingHandler extends ChannelOutboundHandlerAdapter {
+
+    private final DeliveryService delivery;
+
+    public DeliveryTrackingHandler(DeliveryService delivery) {
+        this.delivery = delivery;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ChatMessage message && MessageType.PRIVATE.equals(message.getType())
+                && message.getConversationSeq() != null && message.getSeq() == null) {
+            Integer uid = ctx.channel().attr(SessionRegistry.UID).get();
+            if (uid != null) {
+                if (ctx.channel().isActive()) {
+                    delivery.track(uid, message);
+                } else {
+                    // 连接已关闭，窗口可能已经清理过，直接放入离线收件箱
+                    delivery.undeliverable(uid, message);
+                }
+            }
+        }
+        super.write(ctx, msg, promise);
+    }
+}
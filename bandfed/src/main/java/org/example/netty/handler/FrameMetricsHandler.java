@@ -0,0 +1,58 @@
+package org.example.netty.handler;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import org.example.netty.NettyCounters;
+
+/**
+ * 统计经过的数据帧和字节数，以及每个 I/O 线程上已完成握手的连接数
+ * <p>
+ * 位于协议处理器与 ChatFrameCodec 之间，在 I/O 线程中运行，控制帧已被协议处理器消费，不计入统计
+ */
+public class FrameMetricsHandler extends ChannelDuplexHandler {
+
+    private final NettyCounters counters;
+
+    private boolean session;
+
+    public FrameMetricsHandler(NettyCounters counters) {
+        this.counters = counters;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof WebSocketFrame frame) {
+            counters.inboundFrame(frame.content().readableBytes());
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof WebSocketFrame frame) {
+            counters.outboundFrame(frame.content().readableBytes());
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete && !session) {
+            session = true;
+            counters.sessionOpened();
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (session) {
+            session = false;
+            counters.sessionClosed();
+        }
+        super.channelInactive(ctx);
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.netty.handler;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.example.netty.NettyCounters;
+
+/**
+ * 处理 IdleStateHandler 的空闲事件
+ * <p>
+ * 一段时间没有写出时向客户端发送 Ping，客户端回复的 Pong 会刷新读空闲计时；
+ * 超过读空闲时间仍未收到任何数据说明连接已经半开，直接关闭回收会话。
+ */
+@Slf4j
+public class HeartbeatHandler extends ChannelDuplexHandler {
+
+    private final NettyCounters counters;
+
+    // WebSocket 握手完成前不能发送 Ping 帧
+    private boolean upgraded;
+
+    public HeartbeatHandler(NettyCounters counters) {
+        this.counters = counters;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+            upgraded = true;
+        } else if (evt instanceof IdleStateEvent idle) {
+            if (idle.state() == IdleState.READER_IDLE) {
+                counters.sessionReaped();
+                log.info("Closing idle connection: {}", ctx.channel().id().asShortText());
+                ctx.close();
+                return;
+            }
+            if (idle.state() == IdleState.WRITER_IDLE && upgraded) {
+                ctx.writeAndFlush(new PingWebSocketFrame());
+                return;
+            }
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.netty.handler;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.example.netty.NettyCounters;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * 出站背压处理
+ * <p>
+ * 连接可写时直接写出；超过写缓冲区高水位后把消息暂存到有界队列，
+ * 等连接重新可写时按顺序写出。队列满时按 {@link SlowConsumerPolicy} 丢弃消息或断开连接，
+ * 避免一个卡住的客户端让出站缓冲无限增长。
+ */
+@Slf4j
+public class OutboundBufferHandler extends ChannelDuplexHandler {
+
+    private static final SlowConsumerException QUEUE_FULL = new SlowConsumerException();
+
+    private final int maxQueued;
+
+    private final SlowConsumerPolicy policy;
+
+    private final NettyCounters counters;
+
+    private final Queue<PendingWrite> queue = new ArrayDeque<>();
+
+    public OutboundBufferHandler(int maxQueued, SlowConsumerPolicy policy, NettyCounters counters) {
+        this.maxQueued = maxQueued;
+        this.policy = policy;
+        this.counters = counters;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        // 队列中还有消息时新消息也要排队，保证顺序
+        if (queue.isEmpty() && ctx.channel().isWritable()) {
+            ctx.write(msg, promise);
+            return;
+        }
+        if (queue.size() < maxQueued) {
+            queue.add(new PendingWrite(msg, promise));
+            counters.outboundQueued();
+            return;
+        }
+        ReferenceCountUtil.release(msg);
+        promise.tryFailure(QUEUE_FULL);
+        if (policy == SlowConsumerPolicy.DISCONNECT) {
+            counters.slowConsumerDisconnected();
+            log.warn("Slow consumer disconnected: {}", ctx.channel().id().asShortText());
+            ctx.close();
+        } else {
+            counters.slowConsumerDropped();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            drain(ctx);
+        } else {
+            counters.unwritable();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        discard();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        discard();
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        int written = 0;
+        PendingWrite pending;
+        while (ctx.channel().isWritable() && (pending = queue.poll()) != null) {
+            ctx.write(pending.msg, pending.promise);
+            written++;
+        }
+        if (written > 0) {
+            counters.outboundDrained(written);
+            ctx.flush();
+        }
+    }
+
+    /**
+     * 连接关闭时丢弃暂存的消息，以 ClosedChannelException 失败，与队列满区分开
+     */
+    private void discard() {
+        if (queue.isEmpty()) return;
+        ClosedChannelException closed = new ClosedChannelException();
+        int discarded = 0;
+        PendingWrite pending;
+        while ((pending = queue.poll()) != null) {
+            ReferenceCountUtil.release(pending.msg);
+            pending.promise.tryFailure(closed);
+            discarded++;
+        }
+        if (discarded > 0) {
+            counters.outboundDrained(discarded);
+        }
+    }
+
+    private record PendingWrite(Object msg, ChannelPromise promise) {
+    }
+
+    /**
+     * 消息因发送队列已满、按慢消费者策略未能写出
+     */
+    public static final class SlowConsumerException extends RuntimeException {
+        private SlowConsumerException() {
+            super("Outbound queue is full", null, false, false);
+        }
+    }
+}
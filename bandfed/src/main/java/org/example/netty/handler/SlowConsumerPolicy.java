@@ -0,0 +1,11 @@
+package org.example.netty.handler;
+
+/**
+ * 发送队列已满时对慢消费者的处理策略
+ */
+public enum SlowConsumerPolicy {
+    // 丢弃新消息，连接保持
+    DROP,
+    // 断开连接
+    DISCONNECT
+}
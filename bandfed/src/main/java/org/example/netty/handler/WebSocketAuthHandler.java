@@ -0,0 +1,89 @@
+package org.example.netty.handler;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+import org.example.entity.RestBean;
+import org.example.utils.JwtUtils;
+
+import java.util.List;
+
+/**
+ * 在 WebSocket 升级请求阶段校验 JWT
+ * <p>
+ * 令牌可以放在 Authorization 请求头（Bearer）或查询参数 token 中，浏览器无法自定义 WebSocket 请求头时使用后者。
+ * 校验通过后把 uid 绑定到连接上并移除自身；校验失败直接返回 401 并关闭连接，
+ * 未认证的连接不会进入 WebSocket 阶段。
+ */
+@Slf4j
+public class WebSocketAuthHandler extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 握手阶段认证得到的用户 ID，握手完成后由业务处理器注册到会话表
+     */
+    public static final AttributeKey<Integer> AUTHENTICATED_UID = AttributeKey.valueOf("authenticatedUid");
+
+    private static final String TOKEN_PARAM = "token";
+
+    private final JwtUtils jwtUtils;
+
+    private final String websocketPath;
+
+    public WebSocketAuthHandler(JwtUtils jwtUtils, String websocketPath) {
+        this.jwtUtils = jwtUtils;
+        this.websocketPath = websocketPath;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof FullHttpRequest request)) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        QueryStringDecoder decoder = new QueryStringDecoder(request.uri());
+        if (!websocketPath.equals(decoder.path())) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        DecodedJWT jwt = jwtUtils.resolveJwt(request.headers().get(HttpHeaderNames.AUTHORIZATION));
+        if (jwt == null) {
+            List<String> tokens = decoder.parameters().get(TOKEN_PARAM);
+            if (tokens != null && !tokens.isEmpty()) {
+                jwt = jwtUtils.resolveToken(tokens.get(0));
+            }
+        }
+        if (jwt == null) {
+            request.release();
+            reject(ctx);
+            return;
+        }
+        ctx.channel().attr(AUTHENTICATED_UID).set(jwtUtils.toId(jwt));
+        // 去掉查询参数，避免令牌出现在后续处理和日志中
+        request.setUri(decoder.path());
+        ctx.pipeline().remove(this);
+        ctx.fireChannelRead(request);
+    }
+
+    private void reject(ChannelHandlerContext ctx) {
+        log.info("WebSocket handshake rejected: {}", ctx.channel().remoteAddress());
+        ByteBuf content = Unpooled.wrappedBuffer(RestBean.unauthorized("认证失败").asJsonBytes());
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.UNAUTHORIZED, content);
+        response.headers()
+                .set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                .setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+}
@@ -1,37 +1,93 @@
 package org.example.netty.handler;
 
-import com.alibaba.fastjson2.JSON;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.channel.group.ChannelGroup;
-import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
-import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import lombok.extern.slf4j.Slf4j;
+import org.example.cluster.ClusterRouter;
 import org.example.entity.dto.ChatMessage;
-import org.example.utils.JwtUtils;
+import org.example.entity.dto.Message;
+import org.example.entity.dto.MessageType;
+import org.example.netty.session.RoomRegistry;
+import org.example.netty.session.SessionRegistry;
+import org.example.service.DeliveryService;
+import org.example.service.InboxService;
+import org.example.service.MessageService;
+import org.example.service.PresenceService;
+import org.example.service.RoomService;
+import org.example.utils.SnowflakeIdGenerator;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Slf4j
-public class WebSocketMessageHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+public class WebSocketMessageHandler extends SimpleChannelInboundHandler<ChatMessage> {
 
-    // 管理在线用户
-    private static final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    // 在线会话注册表
+    private final SessionRegistry sessions;
 
-    //存储客户端ID和对应的ChannelHandlerContext的映射
-    private static final Map<String, ChannelHandlerContext> clients = new ConcurrentHashMap<>();
+    // 消息异步持久化
+    private final MessageService messages;
 
-    private final JwtUtils jwtUtils;
+    private final SnowflakeIdGenerator ids;
 
-    public WebSocketMessageHandler(JwtUtils jwtUtils) {
-        this.jwtUtils = jwtUtils;
+    // 离线收件箱
+    private final InboxService inbox;
+
+    // 群聊房间中本节点在线的成员，用于投递
+    private final RoomRegistry rooms;
+
+    // 群聊房间成员关系，各节点共享，断开连接后保留
+    private final RoomService roomService;
+
+    // 本地及跨节点的消息投递
+    private final ClusterRouter router;
+
+    // 在线状态
+    private final PresenceService presence;
+
+    // 会话序号和私聊送达确认
+    private final DeliveryService delivery;
+
+    // 补发离线消息时每页的条数
+    private final int syncPageSize;
+
+    public WebSocketMessageHandler(SessionRegistry sessions, MessageService messages, SnowflakeIdGenerator ids,
+                                   InboxService inbox, RoomRegistry rooms, RoomService roomService, ClusterRouter router,
+                                   PresenceService presence, DeliveryService delivery, int syncPageSize) {
+        this.sessions = sessions;
+        this.messages = messages;
+        this.ids = ids;
+        this.inbox = inbox;
+        this.rooms = rooms;
+        this.roomService = roomService;
+        this.router = router;
+        this.presence = presence;
+        this.delivery = delivery;
+        this.syncPageSize = syncPageSize;
     }
 
+    /**
+     * WebSocket 握手完成后才注册会话、加入广播组，避免向仍处于 HTTP 阶段的连接写入 WebSocket 帧
+     *
+     * @param ctx 通道处理上下文
+     * @param evt 用户事件
+     */
     @Override
-    public void handlerAdded(ChannelHandlerContext ctx) {
-        channels.add(ctx.channel());
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+            // uid 已在握手阶段由 WebSocketAuthHandler 校验并绑定
+            Integer uid = ctx.channel().attr(WebSocketAuthHandler.AUTHENTICATED_UID).getAndSet(null);
+            sessions.register(uid, ctx.channel());
+            sessions.online(ctx.channel());
+            router.online(uid);
+            presence.connected(uid);
+            // 向客户端发送其ID
+            ctx.writeAndFlush(system("Your client ID: " + uid));
+            // 记录日志
+            log.info("Client connected with custom ID: {}", uid);
+        }
+        super.userEventTriggered(ctx, evt);
     }
     /**
      * 当客户端连接到服务器时调用
@@ -40,79 +96,274 @@ public class WebSocketMessageHandler extends SimpleChannelInboundHandler<TextWeb
      */
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        // 获取连接信息
-        System.out.println("执行顺序1");
         // 获取客户端ID
         String clientId = ctx.channel().id().asShortText();
-        // 将客户端ID和对应的ChannelHandlerContext存储到映射中
-        clients.put(clientId, ctx);
-        // 向客户端发送其ID
-        ctx.writeAndFlush(new TextWebSocketFrame("Your client ID: " + clientId));
         // 记录客户端连接信息
         log.info("Client connected: {}", clientId);
-        super.channelInactive(ctx);
+        super.channelActive(ctx);
     }
 
     /**
      * 当接收到客户端发送的消息时调用
      *
      * @param ctx 通道处理上下文
-     * @param frame 接收到的消息
+     * @param payload 解码后的消息
      */
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame frame) throws Exception {
-        // 获取客户端ID
-        String clientId = ctx.channel().id().asShortText();
-        // 解析客户端发送的JSON消息
-        String jsonMessage = frame.text();
-
-        if (!jsonMessage.contains("type")) {
-            Integer uid = jwtUtils.getUid(jsonMessage);
-            clients.put(String.valueOf(uid),  ctx);
-            // 向客户端发送确认消息
-            ctx.writeAndFlush(new  TextWebSocketFrame("Your custom client ID: " + uid));
-            // 记录日志
-            log.info("Client  connected with custom ID: {}", uid);
-        }else{
-            System.out.println("Received message: " + jsonMessage);
-            ChatMessage payload = JSON.parseObject(jsonMessage, ChatMessage.class);
-//        // 根据消息类型处理
-            if ("private".equals(payload.getType())) {
-                // 私聊消息：发送给指定客户端
-                ChannelHandlerContext targetCtx = clients.get(payload.getTargetUserId());
-                if (targetCtx != null) {
-                    targetCtx.writeAndFlush(new TextWebSocketFrame("Private message from " + ctx.channel().id().asShortText() + ": " + payload.getContent()));
-                } else {
-                    ctx.writeAndFlush(new TextWebSocketFrame("Error: Target user " + payload.getTargetUserId() + " not found"));
+    protected void channelRead0(ChannelHandlerContext ctx, ChatMessage payload) throws Exception {
+        if (MessageType.PING.equals(payload.getType())) {
+            // 客户端心跳，收到任何数据都会刷新读空闲计时，这里只需回复
+            ctx.writeAndFlush(new ChatMessage().setType(MessageType.PONG));
+            return;
+        }
+        log.debug("Received message: {}", payload);
+        Integer fromUserId = sessions.uidOf(ctx.channel());
+        // 根据消息类型处理
+        if (MessageType.PRIVATE.equals(payload.getType())) {
+            // 私聊消息：发送给目标用户的所有连接
+            Integer targetUserId = payload.getTargetUserId();
+            if (targetUserId == null) {
+                ctx.writeAndFlush(error("Target user not specified"));
+                return;
+            }
+            ChatMessage ack = persist(ctx, new Message()
+                    .setConversationId(Message.conversationId(fromUserId, targetUserId))
+                    .setFromUid(fromUserId)
+                    .setToUid(targetUserId)
+                    .setType(MessageType.PRIVATE)
+                    .setContent(payload.getContent()));
+            if (ack == null) return;
+            ChatMessage message = new ChatMessage()
+                    .setType(MessageType.PRIVATE)
+                    .setMessageId(ack.getMessageId())
+                    .setConversationSeq(ack.getConversationSeq())
+                    .setFromUserId(fromUserId)
+                    .setContent(payload.getContent());
+            if (!router.sendToUser(targetUserId, message)) {
+                // 对方不在任何节点上，写入离线收件箱，等对方上线后补发
+                offline(ctx, targetUserId, message);
+            }
+        } else if (MessageType.BROADCAST.equals(payload.getType())) {
+            ChatMessage ack = persist(ctx, new Message()
+                    .setConversationId(0L)
+                    .setFromUid(fromUserId)
+                    .setType(MessageType.BROADCAST)
+                    .setContent(payload.getContent()));
+            if (ack == null) return;
+            // 广播消息：每种消息格式只编码一次
+            router.broadcast(ctx.alloc(), new ChatMessage()
+                    .setType(MessageType.BROADCAST)
+                    .setMessageId(ack.getMessageId())
+                    .setConversationSeq(ack.getConversationSeq())
+                    .setFromUserId(fromUserId)
+                    .setContent(payload.getContent()));
+        } else if (MessageType.ROOM.equals(payload.getType())) {
+            // 群聊消息：只有房间成员可以发送
+            Integer roomId = payload.getRoomId();
+            if (roomId == null || !rooms.isMember(roomId, fromUserId)) {
+                ctx.writeAndFlush(error("Not a member of room " + roomId));
+                return;
+            }
+            ChatMessage ack = persist(ctx, new Message()
+                    .setConversationId(Message.roomConversationId(roomId))
+                    .setFromUid(fromUserId)
+                    .setType(MessageType.ROOM)
+                    .setContent(payload.getContent()));
+            if (ack == null) return;
+            router.sendToRoom(ctx.alloc(), roomId, new ChatMessage()
+                    .setType(MessageType.ROOM)
+                    .setRoomId(roomId)
+                    .setMessageId(ack.getMessageId())
+                    .setConversationSeq(ack.getConversationSeq())
+                    .setFromUserId(fromUserId)
+                    .setContent(payload.getContent()));
+        } else if (MessageType.JOIN.equals(payload.getType()) || MessageType.LEAVE.equals(payload.getType())) {
+            Integer roomId = payload.getRoomId();
+            if (roomId == null || roomId <= 0) {
+                ctx.writeAndFlush(error("Invalid room " + roomId));
+                return;
+            }
+            if (MessageType.JOIN.equals(payload.getType())) {
+                // 先记录共享的成员关系，失败时不加入，避免能收到消息却查不到历史
+                try {
+                    roomService.join(roomId, fromUserId);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to record membership of room {} for {}: {}", roomId, fromUserId, e.getMessage());
+                    ctx.writeAndFlush(error("Failed to join room " + roomId));
+                    return;
                 }
-            } else if ("broadcast".equals(payload.getType())) {
-                // 广播消息：发送给所有客户端
-                for (ChannelHandlerContext clientCtx : clients.values()) {
-                    clientCtx.writeAndFlush(new TextWebSocketFrame("Broadcast message from " + ctx.channel().id().asShortText() + ": " + payload.getContent()));
+                rooms.join(roomId, fromUserId);
+            } else {
+                rooms.leave(roomId, fromUserId);
+                try {
+                    roomService.leave(roomId, fromUserId);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to remove membership of room {} for {}: {}", roomId, fromUserId, e.getMessage());
                 }
+            }
+            // 原样回复作为确认
+            ctx.writeAndFlush(new ChatMessage().setType(payload.getType()).setRoomId(roomId));
+        } else if (MessageType.SUBSCRIBE.equals(payload.getType())) {
+            // 订阅在线状态，立即回复当前状态
+            Integer targetUserId = payload.getTargetUserId();
+            if (targetUserId == null) {
+                ctx.writeAndFlush(error("Target user not specified"));
+            } else if (!presence.subscribe(fromUserId, targetUserId)) {
+                ctx.writeAndFlush(error("Too many presence subscriptions"));
             } else {
-                // 未知消息类型
-                ctx.writeAndFlush(new TextWebSocketFrame("Error: Unknown message type"));
+                ctx.writeAndFlush(new ChatMessage()
+                        .setType(MessageType.PRESENCE)
+                        .setFromUserId(targetUserId)
+                        .setContent(presence.isOnline(targetUserId) ? "online" : "offline"));
+            }
+        } else if (MessageType.UNSUBSCRIBE.equals(payload.getType())) {
+            if (payload.getTargetUserId() != null) {
+                presence.unsubscribe(fromUserId, payload.getTargetUserId());
+            }
+        } else if (MessageType.SYNC.equals(payload.getType())) {
+            // 客户端上线后请求补发离线消息
+            sync(ctx, fromUserId, payload.getSeq() == null ? 0 : payload.getSeq());
+        } else if (MessageType.ACK.equals(payload.getType())) {
+            // 客户端确认已收到的离线消息
+            if (payload.getSeq() != null) {
+                inbox.trim(fromUserId, payload.getSeq());
+            }
+            // 按会话累计确认已收到的实时私聊消息
+            if (payload.getTargetUserId() != null && payload.getConversationSeq() != null) {
+                delivery.acknowledge(fromUserId, payload.getTargetUserId(), payload.getConversationSeq());
+            }
+        } else if (MessageType.READ.equals(payload.getType())) {
+            if (payload.getTargetUserId() != null && payload.getConversationSeq() != null) {
+                delivery.read(fromUserId, payload.getTargetUserId(), payload.getConversationSeq());
+            }
+        } else {
+            // 未知消息类型
+            ctx.writeAndFlush(error("Unknown message type"));
+        }
+    }
+
+    private void offline(ChannelHandlerContext ctx, int uid, ChatMessage message) {
+        try {
+            inbox.push(uid, message);
+        } catch (RuntimeException e) {
+            log.warn("Failed to store offline message for {}: {}", uid, e.getMessage());
+            ctx.writeAndFlush(error("User " + uid + " is offline and the message could not be queued"));
+        }
+    }
+
+    /**
+     * 补发序号大于 afterSeq 的离线消息，并删除客户端已收到的部分
+     *
+     * @param ctx 通道处理上下文
+     * @param uid 用户 ID
+     * @param afterSeq 客户端已收到的最后一个序号
+     */
+    private void sync(ChannelHandlerContext ctx, int uid, long afterSeq) {
+        try {
+            // 客户端的序号比服务端还大，说明收件箱数据已丢失（例如 Redis 被清空），从头补发
+            if (afterSeq > inbox.lastSeq(uid)) {
+                afterSeq = 0;
+            }
+            inbox.trim(uid, afterSeq);
+        } catch (RuntimeException e) {
+            syncFailed(ctx, uid, e);
+            return;
+        }
+        replay(ctx, uid, afterSeq);
+    }
+
+    /**
+     * 分页补发离线消息，上一页写入 socket 后才读取下一页，避免一次性占满出站缓冲。
+     * 全部补发完成后回复 SYNC，携带最后一条消息的序号
+     */
+    private void replay(ChannelHandlerContext ctx, int uid, long afterSeq) {
+        List<ChatMessage> page;
+        try {
+            page = inbox.page(uid, afterSeq, syncPageSize);
+        } catch (RuntimeException e) {
+            syncFailed(ctx, uid, e);
+            return;
+        }
+        if (page.size() < syncPageSize) {
+            page.forEach(ctx::write);
+            long lastSeq = page.isEmpty() ? afterSeq : page.getLast().getSeq();
+            ctx.writeAndFlush(new ChatMessage().setType(MessageType.SYNC).setSeq(lastSeq));
+            return;
+        }
+        for (int i = 0; i < page.size() - 1; i++) {
+            ctx.write(page.get(i));
+        }
+        long lastSeq = page.getLast().getSeq();
+        ctx.writeAndFlush(page.getLast()).addListener(future -> {
+            // 写入失败（连接关闭或慢消费者被丢弃）时停止补发，客户端重连后会重新同步
+            if (future.isSuccess()) {
+                ctx.executor().execute(() -> replay(ctx, uid, lastSeq));
             }
+        });
+    }
+
+    private void syncFailed(ChannelHandlerContext ctx, int uid, RuntimeException e) {
+        log.warn("Failed to sync offline messages for {}: {}", uid, e.getMessage());
+        ctx.writeAndFlush(error("Failed to sync offline messages"));
+    }
+
+    /**
+     * 分配消息 ID 和会话序号后放入异步写入队列，入队成功后向发送者回复 ACK；
+     * 队列已满时回复错误，调用方不应再投递该消息。
+     * 序号在入队前分配并随消息持久化，入队失败时该序号作废，会话内序号可能有空洞
+     *
+     * @param ctx 发送者的通道处理上下文
+     * @param message 待持久化的消息
+     * @return 回复给发送者的 ACK，携带消息 ID 和会话序号，入队失败时返回 null
+     */
+    private ChatMessage persist(ChannelHandlerContext ctx, Message message) {
+        long conversationSeq = delivery.nextSeq(message.getConversationId());
+        long messageId = ids.nextId();
+        message.setId(messageId).setConversationSeq(conversationSeq).setCreateTime(LocalDateTime.now());
+        if (!messages.enqueue(message)) {
+            log.warn("Message queue is full, rejecting message from {}", message.getFromUid());
+            ctx.writeAndFlush(error("Server busy, message not sent"));
+            return null;
         }
+        ChatMessage ack = new ChatMessage()
+                .setType(MessageType.ACK)
+                .setMessageId(messageId)
+                .setConversationSeq(conversationSeq);
+        ctx.writeAndFlush(ack);
+        return ack;
     }
 
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
         // 获取客户端ID
         String clientId = ctx.channel().id().asShortText();
-        // 移除clientId的映射
-        clients.remove(clientId);
-        // 遍历clients映射，找到与当前ChannelHandlerContext对应的自定义uid并移除
-        clients.entrySet().removeIf(entry -> entry.getValue().equals(ctx));
+        // 通过连接上的 uid 属性直接移除会话，无需遍历
+        Integer uid = sessions.unregister(ctx.channel());
+        if (uid != null) {
+            router.offline(uid);
+            // 本节点上已没有该用户的连接，退出所有房间
+            if (sessions.lookup(uid).length == 0) {
+                rooms.leaveAll(uid);
+                presence.disconnected(uid);
+                delivery.disconnected(uid);
+            }
+        }
         // 记录客户端断开连接信息
         log.info("Client disconnected: {}", clientId);
-        super.channelInactive(ctx);
+        super.handlerRemoved(ctx);
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        System.out.println("发生异常: " + cause.getMessage());
+        log.warn("发生异常: {}", cause.getMessage());
         ctx.close();
     }
-}
\ No newline at end of file
+
+    private static ChatMessage system(String content) {
+        return new ChatMessage().setType(MessageType.SYSTEM).setContent(content);
+    }
+
+    private static ChatMessage error(String content) {
+        return new ChatMessage().setType(MessageType.ERROR).setContent(content);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.netty.session;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundInvoker;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.example.entity.dto.ChatMessage;
+import org.example.netty.codec.ChatFrameCodec;
+import org.example.netty.codec.WireFormat;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把同一条消息写给一批连接，广播和群聊共用
+ * <p>
+ * 每种消息格式只编码一次，按连接所在的 EventLoop 分组，每个 EventLoop 只提交一个任务，
+ * 在任务中依次写入该组的所有连接后统一 flush，避免为每个连接单独唤醒 I/O 线程。
+ * 帧从编解码器之前写入，不经过业务执行器。用法：
+ * <pre>
+ * FanOut fanOut = new FanOut(alloc, message);
+ * try {
+ *     channels.forEach(fanOut::add);
+ * } finally {
+ *     fanOut.release();
+ * }
+ * return fanOut.flush();
+ * </pre>
+ */
+final class FanOut {
+
+    private final ByteBufAllocator alloc;
+
+    private final ChatMessage message;
+
+    // 每种格式编码一次的原始帧，每个连接写入它的 retainedDuplicate
+    private final Map<WireFormat, WebSocketFrame> frames = new EnumMap<>(WireFormat.class);
+
+    private final Map<EventLoop, List<Write>> partitions = new HashMap<>();
+
+    private int receivers;
+
+    FanOut(ByteBufAllocator alloc, ChatMessage message) {
+        this.alloc = alloc;
+        this.message = message;
+    }
+
+    /**
+     * @param channel 接收消息的连接
+     */
+    void add(Channel channel) {
+        // 没有编解码器的连接（例如测试中的连接）从流水线尾部写入
+        ChannelHandlerContext codec = channel.pipeline().context(ChatFrameCodec.class);
+        ChannelOutboundInvoker target = codec == null ? channel : codec;
+        WireFormat format = channel.attr(ChatFrameCodec.FORMAT).get();
+        WebSocketFrame frame = frames.computeIfAbsent(format == null ? WireFormat.JSON : format,
+                f -> f.codec().encode(alloc, message));
+        partitions.computeIfAbsent(channel.eventLoop(), loop -> new ArrayList<>())
+                .add(new Write(target, frame.retainedDuplicate()));
+        receivers++;
+    }
+
+    /**
+     * 释放原始帧，已加入的连接持有各自的引用
+     */
+    void release() {
+        frames.values().forEach(WebSocketFrame::release);
+        frames.clear();
+    }
+
+    /**
+     * 向每个 EventLoop 提交写入任务，已在该 EventLoop 上时直接写入
+     *
+     * @return 写入的连接数
+     */
+    int flush() {
+        partitions.forEach((loop, writes) -> {
+            if (loop.inEventLoop()) {
+                write(writes);
+            } else {
+                loop.execute(() -> write(writes));
+            }
+        });
+        return receivers;
+    }
+
+    private static void write(List<Write> writes) {
+        for (Write write : writes) {
+            write.target().write(write.frame());
+        }
+        for (Write write : writes) {
+            write.target().flush();
+        }
+    }
+
+    private record Write(ChannelOutboundInvoker target, WebSocketFrame frame) {
+    }
+}
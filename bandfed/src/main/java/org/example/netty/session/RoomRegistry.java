@@ -0,0 +1,176 @@
+package org.example.netty.session;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.util.collection.IntObjectHashMap;
+import org.example.entity.dto.ChatMessage;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * 群聊房间成员索引
+ * <p>
+ * 房间 -> 成员 uid、uid -> 所在房间两个方向的索引都用有序 int 数组保存，写时复制，
+ * 发消息时读到的成员快照不会再被修改，不需要加锁。这里只记录本节点在线连接的成员，用于投递，
+ * 用户在本节点的最后一个连接断开时退出所有房间；不随连接变化的成员关系由 RoomService 保存。
+ */
+@Component
+public class RoomRegistry {
+
+    private static final int[] EMPTY = new int[0];
+
+    // 分段数量，必须是 2 的幂
+    private static final int STRIPES = 64;
+
+    private final SessionRegistry sessions;
+
+    // 房间 -> 有序的成员 uid
+    private final IntObjectHashMap<int[]>[] rooms;
+
+    // uid -> 有序的房间 ID
+    private final IntObjectHashMap<int[]>[] memberships;
+
+    @SuppressWarnings("unchecked")
+    public RoomRegistry(SessionRegistry sessions) {
+        this.sessions = sessions;
+        rooms = new IntObjectHashMap[STRIPES];
+        memberships = new IntObjectHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            rooms[i] = new IntObjectHashMap<>();
+            memberships[i] = new IntObjectHashMap<>();
+        }
+    }
+
+    /**
+     * 用户加入房间
+     * <p>
+     * 同一用户的加入、离开都在该用户所在的 uid 分段锁内更新两个方向的索引，与 leaveAll 互斥；
+     * 加锁后用户在本节点已没有连接时不再加入，避免 leaveAll 之后留下无人清理的成员
+     *
+     * @param roomId 房间 ID
+     * @param uid    用户 ID
+     * @return 是否新加入，已是成员或已没有连接时返回 false
+     */
+    public boolean join(int roomId, int uid) {
+        synchronized (stripe(memberships, uid)) {
+            if (sessions.lookup(uid).length == 0) return false;
+            if (!update(rooms, roomId, uid, true)) return false;
+            update(memberships, uid, roomId, true);
+            return true;
+        }
+    }
+
+    /**
+     * 用户离开房间
+     *
+     * @param roomId 房间 ID
+     * @param uid    用户 ID
+     * @return 是否离开，不是成员时返回 false
+     */
+    public boolean leave(int roomId, int uid) {
+        synchronized (stripe(memberships, uid)) {
+            if (!update(rooms, roomId, uid, false)) return false;
+            update(memberships, uid, roomId, false);
+            return true;
+        }
+    }
+
+    /**
+     * 用户离开所在的所有房间
+     *
+     * @param uid 用户 ID
+     */
+    public void leaveAll(int uid) {
+        synchronized (stripe(memberships, uid)) {
+            for (int roomId : roomsOf(uid)) {
+                leave(roomId, uid);
+            }
+        }
+    }
+
+    public boolean isMember(int roomId, int uid) {
+        return Arrays.binarySearch(members(roomId), uid) >= 0;
+    }
+
+    /**
+     * @param roomId 房间 ID
+     * @return 有序的成员 uid，调用方不能修改返回的数组
+     */
+    public int[] members(int roomId) {
+        return get(rooms, roomId);
+    }
+
+    /**
+     * @param uid 用户 ID
+     * @return 用户所在的房间，调用方不能修改返回的数组
+     */
+    public int[] roomsOf(int uid) {
+        return get(memberships, uid);
+    }
+
+    /**
+     * 把消息发送给房间内所有成员在本节点的连接，按连接所在的 EventLoop 批量写入，见 {@link FanOut}
+     *
+     * @param alloc   缓冲区分配器
+     * @param roomId  房间 ID
+     * @param message 消息
+     * @return 写入的连接数
+     */
+    public int fanOut(ByteBufAllocator alloc, int roomId, ChatMessage message) {
+        int[] members = members(roomId);
+        if (members.length == 0) return 0;
+        FanOut fanOut = new FanOut(alloc, message);
+        try {
+            for (int uid : members) {
+                for (Channel channel : sessions.lookup(uid)) {
+                    fanOut.add(channel);
+                }
+            }
+        } finally {
+            fanOut.release();
+        }
+        return fanOut.flush();
+    }
+
+    // 加锁顺序固定为 uid 分段（memberships）在外、房间分段（rooms）在内
+    private boolean update(IntObjectHashMap<int[]>[] index, int key, int value, boolean add) {
+        IntObjectHashMap<int[]> stripe = stripe(index, key);
+        synchronized (stripe) {
+            int[] current = stripe.get(key);
+            if (current == null) current = EMPTY;
+            int position = Arrays.binarySearch(current, value);
+            if (add == position >= 0) return false;
+            if (add) {
+                int insert = -position - 1;
+                int[] next = new int[current.length + 1];
+                System.arraycopy(current, 0, next, 0, insert);
+                next[insert] = value;
+                System.arraycopy(current, insert, next, insert + 1, current.length - insert);
+                stripe.put(key, next);
+            } else if (current.length == 1) {
+                stripe.remove(key);
+            } else {
+                int[] next = new int[current.length - 1];
+                System.arraycopy(current, 0, next, 0, position);
+                System.arraycopy(current, position + 1, next, position, current.length - position - 1);
+                stripe.put(key, next);
+            }
+            return true;
+        }
+    }
+
+    private int[] get(IntObjectHashMap<int[]>[] index, int key) {
+        IntObjectHashMap<int[]> stripe = stripe(index, key);
+        synchronized (stripe) {
+            int[] current = stripe.get(key);
+            return current == null ? EMPTY : current;
+        }
+    }
+
+    private static IntObjectHashMap<int[]> stripe(IntObjectHashMap<int[]>[] index, int key) {
+        // 打散连续的 ID，避免集中到相邻分段
+        int h = key * 0x9E3779B9;
+        return index[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+}
@@ -0,0 +1,213 @@
+package org.example.netty.session;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.example.entity.dto.ChatMessage;
+import org.example.netty.codec.ChatFrameCodec;
+import org.example.netty.codec.WireFormat;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * WebSocket 会话注册表
+ * <p>
+ * 以 int 类型的 uid 为键保存该用户的所有连接（支持多端同时在线），
+ * 同时把 uid 作为 Channel 属性保存，断开连接时可以直接定位到所在分段，
+ * 注册、查询、移除都是常数时间。
+ */
+@Component
+public class SessionRegistry {
+
+    /**
+     * 连接上绑定的用户 ID，作为 channel -> uid 的反向索引
+     */
+    public static final AttributeKey<Integer> UID = AttributeKey.valueOf("uid");
+
+    private static final Channel[] NO_CHANNELS = new Channel[0];
+
+    // 分段数量，必须是 2 的幂
+    private static final int STRIPES = 64;
+
+    // uid -> 该用户的连接数组，数组写时复制，读到的数组不会再被修改
+    private final IntObjectHashMap<Channel[]>[] stripes;
+
+    // 已完成握手的连接，按消息格式分组，用于广播
+    private final Map<WireFormat, ChannelGroup> groups = new EnumMap<>(WireFormat.class);
+
+    @SuppressWarnings("unchecked")
+    public SessionRegistry() {
+        stripes = new IntObjectHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new IntObjectHashMap<>();
+        }
+        for (WireFormat format : WireFormat.values()) {
+            groups.put(format, new DefaultChannelGroup(format.name(), GlobalEventExecutor.INSTANCE));
+        }
+    }
+
+    /**
+     * 连接完成 WebSocket 握手后加入广播组，连接关闭时会被自动移除
+     *
+     * @param channel 连接
+     */
+    public void online(Channel channel) {
+        WireFormat format = channel.attr(ChatFrameCodec.FORMAT).get();
+        groups.get(format == null ? WireFormat.JSON : format).add(channel);
+    }
+
+    /**
+     * 将连接绑定到用户，同一用户可以有多个连接
+     *
+     * @param uid     用户 ID
+     * @param channel 连接
+     */
+    public void register(int uid, Channel channel) {
+        Integer previous = channel.attr(UID).getAndSet(uid);
+        if (previous != null) {
+            if (previous == uid) {
+                return;
+            }
+            remove(previous, channel);
+        }
+        IntObjectHashMap<Channel[]> stripe = stripe(uid);
+        synchronized (stripe) {
+            Channel[] current = stripe.get(uid);
+            if (current == null) {
+                stripe.put(uid, new Channel[]{channel});
+            } else {
+                Channel[] next = Arrays.copyOf(current, current.length + 1);
+                next[current.length] = channel;
+                stripe.put(uid, next);
+            }
+        }
+    }
+
+    /**
+     * 移除连接与用户的绑定
+     *
+     * @param channel 连接
+     * @return 连接之前绑定的用户 ID，未绑定时返回 null
+     */
+    public Integer unregister(Channel channel) {
+        Integer uid = channel.attr(UID).getAndSet(null);
+        if (uid != null) {
+            remove(uid, channel);
+        }
+        return uid;
+    }
+
+    /**
+     * 查询用户当前的所有连接
+     *
+     * @param uid 用户 ID
+     * @return 连接数组，用户不在线时返回空数组，调用方不能修改返回的数组
+     */
+    public Channel[] lookup(int uid) {
+        IntObjectHashMap<Channel[]> stripe = stripe(uid);
+        synchronized (stripe) {
+            Channel[] current = stripe.get(uid);
+            return current == null ? NO_CHANNELS : current;
+        }
+    }
+
+    /**
+     * 获取连接绑定的用户 ID
+     *
+     * @param channel 连接
+     * @return 用户 ID，未绑定时返回 null
+     */
+    public Integer uidOf(Channel channel) {
+        return channel.attr(UID).get();
+    }
+
+    /**
+     * 向所有已完成握手的连接广播消息，每个连接只会收到一次
+     * <p>
+     * 与群聊相同，每种消息格式只编码一次，按连接所在的 EventLoop 批量写入，见 {@link FanOut}
+     *
+     * @param alloc   缓冲区分配器
+     * @param message 消息
+     * @return 写入的连接数
+     */
+    public int broadcast(ByteBufAllocator alloc, ChatMessage message) {
+        FanOut fanOut = new FanOut(alloc, message);
+        try {
+            for (ChannelGroup group : groups.values()) {
+                group.forEach(fanOut::add);
+            }
+        } finally {
+            fanOut.release();
+        }
+        return fanOut.flush();
+    }
+
+    /**
+     * @return 当前至少有一个连接的用户 ID 快照
+     */
+    public int[] uids() {
+        IntStream.Builder uids = IntStream.builder();
+        for (IntObjectHashMap<Channel[]> stripe : stripes) {
+            synchronized (stripe) {
+                for (IntObjectMap.PrimitiveEntry<Channel[]> entry : stripe.entries()) {
+                    uids.add(entry.key());
+                }
+            }
+        }
+        return uids.build().toArray();
+    }
+
+    /**
+     * @return 已完成握手的连接数
+     */
+    public int size() {
+        int size = 0;
+        for (ChannelGroup group : groups.values()) {
+            size += group.size();
+        }
+        return size;
+    }
+
+    private void remove(int uid, Channel channel) {
+        IntObjectHashMap<Channel[]> stripe = stripe(uid);
+        synchronized (stripe) {
+            Channel[] current = stripe.get(uid);
+            if (current == null) {
+                return;
+            }
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == channel) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            if (current.length == 1) {
+                stripe.remove(uid);
+                return;
+            }
+            Channel[] next = new Channel[current.length - 1];
+            System.arraycopy(current, 0, next, 0, index);
+            System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+            stripe.put(uid, next);
+        }
+    }
+
+    private IntObjectHashMap<Channel[]> stripe(int uid) {
+        // 打散连续的 uid，避免集中到相邻分段
+        int h = uid * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+}
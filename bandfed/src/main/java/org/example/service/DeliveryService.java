@@ -0,0 +1,57 @@
+package org.example.service;
+
+import org.example.entity.dto.ChatMessage;
+
+public interface DeliveryService {
+    /**
+     * 分配会话内的下一个序号，Redis 不可用时在本地继续分配，不会失败
+     *
+     * @param conversationId 会话 ID
+     * @return 序号
+     */
+    long nextSeq(long conversationId);
+
+    /**
+     * 记录已写给接收者但尚未确认的私聊消息，超出窗口时最旧的一条转入离线收件箱；
+     * 接收者在本节点已没有连接时直接转入离线收件箱
+     *
+     * @param uid 接收者
+     * @param message 带会话序号的私聊消息
+     */
+    void track(int uid, ChatMessage message);
+
+    /**
+     * 消息无法写给接收者（例如连接已关闭），直接转入离线收件箱
+     *
+     * @param uid 接收者
+     * @param message 私聊消息
+     */
+    void undeliverable(int uid, ChatMessage message);
+
+    /**
+     * 接收者确认已收到与 peer 私聊中序号不大于 conversationSeq 的消息，
+     * 并以实际移出窗口的最大序号向 peer 发送送达回执，没有消息被确认时不发送
+     *
+     * @param uid 接收者
+     * @param peer 发送者
+     * @param conversationSeq 已收到的最大会话序号
+     */
+    void acknowledge(int uid, int peer, long conversationSeq);
+
+    /**
+     * 接收者已读与 peer 私聊中序号不大于 conversationSeq 的消息，向 peer 发送已读回执，
+     * 序号不超过已确认送达的最大序号，尚未确认送达时不发送
+     *
+     * @param uid 接收者
+     * @param peer 发送者
+     * @param conversationSeq 已读的最大会话序号
+     */
+    void read(int uid, int peer, long conversationSeq);
+
+    /**
+     * 用户在本节点的最后一个连接已断开，未确认的消息转入离线收件箱，重连后通过 SYNC 补发
+     *
+     * @param uid 用户 ID
+     */
+    void disconnected(int uid);
+}
@@ -0,0 +1,40 @@
+package org.example.service;
+
+import org.example.entity.dto.ChatMessage;
+
+import java.util.List;
+
+public interface InboxService {
+    /**
+     * 将消息写入用户的离线收件箱
+     *
+     * @param uid 接收者
+     * @param message 消息
+     * @return 分配的收件箱序号
+     */
+    long push(int uid, ChatMessage message);
+
+    /**
+     * 读取序号大于 afterSeq 的一页离线消息，按序号升序
+     *
+     * @param uid 用户 ID
+     * @param afterSeq 客户端已收到的最后一个序号
+     * @param limit 最多返回的条数
+     * @return 带 seq 的消息列表
+     */
+    List<ChatMessage> page(int uid, long afterSeq, int limit);
+
+    /**
+     * 删除序号不大于 seq 的离线消息
+     *
+     * @param uid 用户 ID
+     * @param seq 客户端已确认的序号
+     */
+    void trim(int uid, long seq);
+
+    /**
+     * @param uid 用户 ID
+     * @return 该用户已分配的最大序号
+     */
+    long lastSeq(int uid);
+}
@@ -0,0 +1,38 @@
+package org.example.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import org.example.entity.dto.Message;
+
+import java.util.List;
+
+public interface MessageService extends IService<Message> {
+    /**
+     * 将消息放入异步写入队列，不会阻塞调用线程
+     *
+     * @param message 消息
+     * @return 是否入队成功，队列已满时返回 false
+     */
+    boolean enqueue(Message message);
+
+    /**
+     * @return 等待写入数据库的消息数
+     */
+    int queueDepth();
+
+    /**
+     * 把预写日志中尚未写入数据库的消息重新放入写入队列，需在开始接收消息之前调用
+     *
+     * @return 恢复的消息数
+     */
+    int recover();
+
+    /**
+     * 按消息 ID 倒序分页查询会话历史，最近的消息优先从缓存读取
+     *
+     * @param conversationId 会话 ID
+     * @param before 只返回 ID 小于该值的消息，为 null 时从最新一条开始
+     * @param size 最多返回的条数
+     * @return 按 ID 倒序排列的消息
+     */
+    List<Message> history(long conversationId, Long before, int size);
+}
@@ -0,0 +1,34 @@
+package org.example.service;
+
+public interface PresenceService {
+    /**
+     * 用户在本节点建立了连接
+     *
+     * @param uid 用户 ID
+     */
+    void connected(int uid);
+
+    /**
+     * 用户在本节点的最后一个连接已断开，超过宽限期仍未重连才视为下线
+     *
+     * @param uid 用户 ID
+     */
+    void disconnected(int uid);
+
+    /**
+     * 订阅用户的在线状态变化
+     *
+     * @param subscriber 订阅者
+     * @param target 被订阅的用户
+     * @return 是否订阅成功，超过订阅数量上限时返回 false
+     */
+    boolean subscribe(int subscriber, int target);
+
+    void unsubscribe(int subscriber, int target);
+
+    /**
+     * @param uid 用户 ID
+     * @return 用户当前是否在线
+     */
+    boolean isOnline(int uid);
+}
@@ -0,0 +1,28 @@
+package org.example.service;
+
+public interface RoomService {
+    /**
+     * 记录用户加入房间，成员关系保存在 Redis 中，所有节点共享，连接断开后仍然保留
+     *
+     * @param roomId 房间 ID
+     * @param uid 用户 ID
+     */
+    void join(int roomId, int uid);
+
+    /**
+     * 记录用户主动离开房间
+     *
+     * @param roomId 房间 ID
+     * @param uid 用户 ID
+     */
+    void leave(int roomId, int uid);
+
+    /**
+     * 用户是否是房间成员，不要求用户当前在线
+     *
+     * @param roomId 房间 ID
+     * @param uid 用户 ID
+     * @return 是否是成员
+     */
+    boolean isMember(int roomId, int uid);
+}
@@ -1,6 +1,8 @@
 package org.example.service.serviceImpl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import jakarta.annotation.Resource;
+import org.example.config.AccountCache;
 import org.example.entity.dto.Account;
 import org.example.entity.vo.request.UserRegisterDTO;
 import org.example.mapper.AccountMapper;
@@ -12,8 +14,6 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.util.Collection;
-
 @Service
 public class AccountServiceImpl extends ServiceImpl<AccountMapper, Account> implements AccountService {
     @Autowired
@@ -21,6 +21,10 @@ public class AccountServiceImpl extends ServiceImpl<AccountMapper, Account> impl
 
     private final PasswordEncoder passwordEncoder;
 
+    // 账号本地缓存，AccountMapper 的写语句由它统一失效
+    @Resource
+    private AccountCache cache;
+
     // 直接注入 PasswordEncoder
     public AccountServiceImpl(PasswordEncoder passwordEncoder) {
         this.passwordEncoder = passwordEncoder;
@@ -52,7 +56,23 @@ public class AccountServiceImpl extends ServiceImpl<AccountMapper, Account> impl
                 .build();
     }
 
+    /**
+     * 按用户名或邮箱查找账号，优先读取本地缓存
+     * <p>
+     * 包含 @ 时按邮箱查询，否则按用户名查询，每次未命中只执行一条走唯一索引的查询；
+     * 某个账号的用户名恰好等于另一个账号的邮箱时结果也是确定的
+     *
+     * @param text 用户名或邮箱
+     * @return 账号，不存在时返回 null
+     */
+    @Override
     public Account findAccountByNameOrEmail(String text) {
-        return mapper.findAccountByNameOrEmail(text);
+        Account account = cache.get(text);
+        if (account != null) return account;
+        account = text.indexOf('@') >= 0 ? mapper.findAccountByEmail(text) : mapper.findAccountByUsername(text);
+        if (account != null) {
+            cache.put(text, account);
+        }
+        return account;
     }
 }
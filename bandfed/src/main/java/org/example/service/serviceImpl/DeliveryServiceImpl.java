@@ -0,0 +1,271 @@
+package org.example.service.serviceImpl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.example.cluster.ClusterRouter;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.example.netty.session.SessionRegistry;
+import org.example.service.DeliveryService;
+import org.example.service.InboxService;
+import org.example.utils.Const;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 私聊消息的送达确认
+ * <p>
+ * 写给在线接收者的私聊消息先记在该用户的未确认窗口中，客户端按会话累计确认后移出。窗口有上限，超出时最旧的一条转入离线收件箱；
+ * 最后一个连接断开时窗口中剩余的消息全部转入离线收件箱，重连后通过 SYNC 补发，不会因为写出时连接恰好断开而丢失。
+ * 窗口只通过 ConcurrentHashMap 的 compute 系列方法读写，登记时在同一把锁内检查用户在本节点是否还有连接，
+ * 与断开时移除窗口互斥：要么登记在移除之前、随窗口一起转入收件箱，要么看到已无连接直接转入收件箱，不会留下无人清理的窗口。
+ * <p>
+ * 会话序号由 Redis 分配：私聊每条消息 INCR 一次，保证跨节点严格递增，累计确认依赖这一点；
+ * 广播和群聊没有确认窗口，每个节点一次取一段序号在本地分配，避免所有广播争用同一个计数器，
+ * 序号在会话内唯一、在单个节点内递增。Redis 不可用时在本地上次分配的序号之后继续（不知道上次序号时从当前毫秒数开始），
+ * 消息照常发送；之后每次向 Redis 申请时带上本地已分配的最大序号，计数器落后时先抬高再分配，恢复后序号不会回退。
+ * <p>
+ * 送达和已读回执先按 (发送者, 接收者, 类型) 合并，只保留最大序号，定时批量发给发送者。
+ * 回执只反映服务端确认过的事实：送达回执的序号是确认时实际移出窗口的最大序号，已读回执不超过已送达的序号，
+ * 客户端不能替任意用户、任意序号伪造回执。
+ */
+@Slf4j
+@Service
+public class DeliveryServiceImpl implements DeliveryService {
+
+    private static final String DELIVERED = "delivered";
+
+    private static final String READ = "read";
+
+    // 申请一段序号并返回段尾，计数器低于本地已分配的序号（例如 Redis 故障期间本地分配过，或数据丢失）时先抬高
+    private static final RedisScript<Long> NEXT_SEQ_SCRIPT = new DefaultRedisScript<>("""
+            local last = redis.call('INCRBY', KEYS[1], ARGV[1])
+            local floor = tonumber(ARGV[2]) + tonumber(ARGV[1])
+            if last < floor then
+                redis.call('SET', KEYS[1], floor)
+                last = floor
+            end
+            return last
+            """, Long.class);
+
+    // 每个用户已写出但未确认的私聊消息上限
+    @Value("${chat.delivery.window-size:256}")
+    int windowSize;
+
+    // 广播和群聊每次从 Redis 申请的序号数量
+    @Value("${chat.delivery.seq-block-size:100}")
+    int seqBlockSize;
+
+    // 本地记住已分配序号的会话数量上限
+    @Value("${chat.delivery.seq-cache-size:100000}")
+    int seqCacheSize;
+
+    // 回执合并发送的间隔
+    @Value("${chat.delivery.receipt-interval-millis:100}")
+    long receiptIntervalMillis;
+
+    @Resource
+    StringRedisTemplate template;
+
+    @Resource
+    InboxService inbox;
+
+    @Resource
+    ClusterRouter router;
+
+    @Resource
+    SessionRegistry sessions;
+
+    // 接收者 -> 未确认窗口；只在 compute 系列方法内访问，由 ConcurrentHashMap 的桶锁保护
+    private final Map<Integer, Window> windows = new ConcurrentHashMap<>();
+
+    // 待发送的回执 -> 最大会话序号
+    private final Map<Receipt, Long> receipts = new ConcurrentHashMap<>();
+
+    // 会话 -> 本节点已申请的序号段
+    private Cache<Long, SeqRange> ranges;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        ranges = Caffeine.newBuilder().maximumSize(seqCacheSize).expireAfterAccess(Duration.ofHours(1)).build();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("delivery-receipts", true));
+        scheduler.scheduleWithFixedDelay(this::flush, receiptIntervalMillis, receiptIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        flush();
+        // 本节点关闭后这些消息无法再确认，转入收件箱等重连后补发
+        windows.keySet().forEach(this::disconnected);
+    }
+
+    @Override
+    public long nextSeq(long conversationId) {
+        SeqRange range = ranges.get(conversationId, key -> new SeqRange());
+        synchronized (range) {
+            if (range.next <= range.end) return range.next++;
+            // 私聊会话 ID 为正数，需要跨节点严格递增，每次只取一个
+            int block = conversationId > 0 ? 1 : Math.max(1, seqBlockSize);
+            long end;
+            try {
+                Long last = template.execute(NEXT_SEQ_SCRIPT, List.of(Const.CONVERSATION_SEQ + conversationId),
+                        String.valueOf(block), String.valueOf(range.end));
+                end = last == null ? range.end + block : last;
+            } catch (RuntimeException e) {
+                log.warn("Failed to assign sequence for conversation {}, using local sequence: {}",
+                        conversationId, e.getMessage());
+                block = 1;
+                end = (range.end > 0 ? range.end : System.currentTimeMillis()) + 1;
+            }
+            range.next = end - block + 1;
+            range.end = end;
+            return range.next++;
+        }
+    }
+
+    @Override
+    public void track(int uid, ChatMessage message) {
+        List<ChatMessage> undeliverable = new ArrayList<>(1);
+        windows.compute(uid, (key, window) -> {
+            if (sessions.lookup(uid).length == 0) {
+                // 最后一个连接已注销，断开时的清理可能已经执行过，不再新建窗口
+                undeliverable.add(message);
+                return window;
+            }
+            if (window == null) {
+                window = new Window();
+            }
+            // 同一用户有多个连接时每个连接都会写出一次，只记录一份
+            if (window.unacked.putIfAbsent(message.getMessageId(), message) == null
+                    && window.unacked.size() > windowSize) {
+                Iterator<ChatMessage> oldest = window.unacked.values().iterator();
+                undeliverable.add(oldest.next());
+                oldest.remove();
+            }
+            return window;
+        });
+        // 写收件箱访问 Redis，放在锁外
+        undeliverable.forEach(evicted -> undeliverable(uid, evicted));
+    }
+
+    @Override
+    public void undeliverable(int uid, ChatMessage message) {
+        try {
+            inbox.push(uid, message);
+        } catch (RuntimeException e) {
+            log.warn("Failed to store unacknowledged message for {}: {}", uid, e.getMessage());
+        }
+    }
+
+    @Override
+    public void acknowledge(int uid, int peer, long conversationSeq) {
+        long[] delivered = {0};
+        windows.computeIfPresent(uid, (key, window) -> {
+            window.unacked.values().removeIf(message -> {
+                if (message.getFromUserId() != peer || message.getConversationSeq() > conversationSeq) return false;
+                delivered[0] = Math.max(delivered[0], message.getConversationSeq());
+                return true;
+            });
+            if (delivered[0] > 0) {
+                window.delivered.merge(peer, delivered[0], Math::max);
+            }
+            return window;
+        });
+        // 没有消息被确认时不发送回执
+        if (delivered[0] > 0) {
+            receipt(new Receipt(peer, uid, DELIVERED), delivered[0]);
+        }
+    }
+
+    @Override
+    public void read(int uid, int peer, long conversationSeq) {
+        long[] read = {0};
+        windows.computeIfPresent(uid, (key, window) -> {
+            Long delivered = window.delivered.get(peer);
+            if (delivered != null) {
+                read[0] = Math.min(delivered, conversationSeq);
+            }
+            return window;
+        });
+        // 已读不能超过本次连接期间确认送达的序号
+        if (read[0] > 0) {
+            receipt(new Receipt(peer, uid, READ), read[0]);
+        }
+    }
+
+    @Override
+    public void disconnected(int uid) {
+        // 移除后窗口不再被任何 compute 访问，可以在锁外遍历
+        Window window = windows.remove(uid);
+        if (window == null) return;
+        window.unacked.values().forEach(message -> undeliverable(uid, message));
+    }
+
+    private void receipt(Receipt receipt, long conversationSeq) {
+        receipts.merge(receipt, conversationSeq, Math::max);
+    }
+
+    /**
+     * 发送积累的回执，每个 (发送者, 接收者, 类型) 一条；发送者不在线时丢弃，回执不进入离线收件箱
+     */
+    private void flush() {
+        if (receipts.isEmpty()) return;
+        for (Receipt receipt : receipts.keySet()) {
+            Long conversationSeq = receipts.remove(receipt);
+            if (conversationSeq == null) continue;
+            router.sendToUser(receipt.sender(), new ChatMessage()
+                    .setType(MessageType.RECEIPT)
+                    .setFromUserId(receipt.receiver())
+                    .setConversationSeq(conversationSeq)
+                    .setContent(receipt.kind()));
+        }
+    }
+
+    private record Receipt(int sender, int receiver, String kind) {
+    }
+
+    /**
+     * 本节点在一个会话中可以分配的序号 [next, end]，end 同时是本节点分配过的最大序号
+     */
+    private static final class SeqRange {
+
+        long next = 1;
+
+        long end;
+    }
+
+    /**
+     * 一个接收者的送达状态
+     */
+    private static final class Window {
+
+        // 消息 ID -> 已写出但未确认的消息，按写出顺序排列
+        final LinkedHashMap<Long, ChatMessage> unacked = new LinkedHashMap<>();
+
+        // 发送者 -> 已确认送达的最大会话序号，用于校验已读回执
+        final Map<Integer, Long> delivered = new HashMap<>();
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.service.serviceImpl;
+
+import com.alibaba.fastjson2.JSON;
+import jakarta.annotation.Resource;
+import org.example.entity.dto.ChatMessage;
+import org.example.service.InboxService;
+import org.example.utils.Const;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基于 Redis 的离线收件箱
+ * <p>
+ * 每个用户一个 ZSET，score 为单调递增的序号。序号计数器不设过期时间，
+ * 保证收件箱过期后重新写入时序号仍然递增，客户端保存的 seq 不会失效。
+ */
+@Service
+public class InboxServiceImpl implements InboxService {
+
+    // 分配序号、写入并裁剪到上限，在一次往返中原子完成
+    private static final RedisScript<Long> PUSH_SCRIPT = new DefaultRedisScript<>("""
+            local seq = redis.call('INCR', KEYS[2])
+            redis.call('ZADD', KEYS[1], seq, ARGV[1])
+            local overflow = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[2])
+            if overflow > 0 then
+                redis.call('ZREMRANGEBYRANK', KEYS[1], 0, overflow - 1)
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            return seq
+            """, Long.class);
+
+    @Resource
+    StringRedisTemplate template;
+
+    // 每个收件箱最多保留的消息数，超出后丢弃最旧的
+    @Value("${chat.inbox.max-size:1000}")
+    int maxSize;
+
+    // 收件箱在最后一次写入后保留的时间
+    @Value("${chat.inbox.ttl-days:7}")
+    int ttlDays;
+
+    @Override
+    public long push(int uid, ChatMessage message) {
+        Long seq = template.execute(PUSH_SCRIPT, List.of(Const.INBOX + uid, Const.INBOX_SEQ + uid),
+                JSON.toJSONString(message), String.valueOf(maxSize), String.valueOf(ttlDays * 86400L));
+        return seq == null ? 0 : seq;
+    }
+
+    @Override
+    public List<ChatMessage> page(int uid, long afterSeq, int limit) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = template.opsForZSet()
+                .rangeByScoreWithScores(Const.INBOX + uid, afterSeq + 1, Double.POSITIVE_INFINITY, 0, limit);
+        if (tuples == null || tuples.isEmpty()) return List.of();
+        List<ChatMessage> messages = new ArrayList<>(tuples.size());
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            ChatMessage message = JSON.parseObject(tuple.getValue(), ChatMessage.class);
+            messages.add(message.setSeq(tuple.getScore().longValue()));
+        }
+        return messages;
+    }
+
+    @Override
+    public void trim(int uid, long seq) {
+        if (seq <= 0) return;
+        template.opsForZSet().removeRangeByScore(Const.INBOX + uid, 0, seq);
+    }
+
+    @Override
+    public long lastSeq(int uid) {
+        String seq = template.opsForValue().get(Const.INBOX_SEQ + uid);
+        return seq == null ? 0 : Long.parseLong(seq);
+    }
+}
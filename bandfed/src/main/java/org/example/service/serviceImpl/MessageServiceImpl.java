@@ -0,0 +1,375 @@
+package org.example.service.serviceImpl;
+
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.example.entity.dto.Message;
+import org.example.journal.MessageJournal;
+import org.example.mapper.MessageMapper;
+import org.example.service.MessageService;
+import org.example.utils.Const;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息异步批量写入
+ * <p>
+ * 调用方只把消息放进有界队列，由单独的写入线程攒批后执行多行 INSERT，
+ * 达到批量大小或等待超过刷新间隔时写入，Netty 线程不会等待 JDBC。
+ * <p>
+ * 写入成功后同一线程把消息推入 Redis 中每个会话的最近消息列表，打开会话时的首屏历史直接从缓存读取，
+ * 只有更早的历史才查询 MySQL。
+ * <p>
+ * 启用预写日志时，消息先追加到日志再入队，写库成功后提交日志的 checkpoint，进程崩溃后由 {@link #recover()} 补写。
+ * 重试后仍写入失败的批次暂存起来，之后按顺序重试，只要还有未写入的批次 checkpoint 就不会越过它们。
+ * 暂存期间相关会话的最近消息缓存会被删除且不再写入，避免缓存的一整页跳过未写入的消息。
+ */
+@Slf4j
+@Service
+public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> implements MessageService {
+
+    // 缓存 member 中消息 ID 补齐的位数，Long.MAX_VALUE 为 19 位
+    private static final int ID_WIDTH = 19;
+
+    // 写入失败后的最大重试次数
+    private static final int MAX_RETRIES = 3;
+
+    // 最多暂存的写入失败批次数
+    private static final int MAX_PARKED_BATCHES = 64;
+
+    // 重试暂存批次的最小间隔
+    private static final long PARKED_RETRY_INTERVAL_MILLIS = 1000;
+
+    @Value("${chat.store.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${chat.store.batch-size:500}")
+    private int batchSize;
+
+    @Value("${chat.store.flush-interval-millis:50}")
+    private long flushIntervalMillis;
+
+    // 每个会话缓存的最近消息条数
+    @Value("${chat.history.cache-size:50}")
+    private int historyCacheSize;
+
+    // 会话在最后一条消息后缓存保留的天数
+    @Value("${chat.history.cache-ttl-days:7}")
+    private int historyCacheTtlDays;
+
+    @Resource
+    StringRedisTemplate template;
+
+    @Resource
+    MessageJournal journal;
+
+    private BlockingQueue<Entry> queue;
+
+    // 追加日志和入队必须保持相同的顺序，checkpoint 才能按队列顺序推进
+    private final Object appendLock = new Object();
+
+    private Thread writer;
+
+    private volatile boolean running = true;
+
+    // 写入失败、等待重试的批次，按入队顺序排列，只由写入线程访问
+    private final Deque<List<Entry>> parked = new ArrayDeque<>();
+
+    // 暂存批次超过上限被丢弃后置为 true，这些消息只能在重启时从日志恢复，本进程内不再推进 checkpoint
+    private boolean checkpointHeld;
+
+    private long lastParkedRetry;
+
+    // 暂存批次中每个会话未写入的消息条数，只由写入线程访问，计数不为零的会话不写最近消息缓存
+    private final Map<Long, Integer> unpersisted = new HashMap<>();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = new Thread(this::writeLoop, "message-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Override
+    public boolean enqueue(Message message) {
+        if (!journal.isEnabled()) {
+            return queue.offer(new Entry(message, 0));
+        }
+        synchronized (appendLock) {
+            // 先确认队列有空位，避免写入日志后又拒绝消息
+            if (queue.remainingCapacity() == 0) return false;
+            long position;
+            try {
+                position = journal.append(message);
+            } catch (RuntimeException e) {
+                log.error("Failed to append message to journal", e);
+                return false;
+            }
+            // 只有持有锁的线程会入队，这里一定成功
+            queue.add(new Entry(message, position));
+            return true;
+        }
+    }
+
+    @Override
+    public int recover() {
+        try {
+            return journal.recover((message, position) -> {
+                try {
+                    queue.put(new Entry(message, position));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while recovering journal", e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public List<Message> history(long conversationId, Long before, int size) {
+        long cursor = before == null ? Long.MAX_VALUE : before;
+        List<Message> cached = cachedBefore(conversationId, cursor, size);
+        if (cached.size() >= size) return cached;
+        return baseMapper.findBefore(conversationId, cursor, size);
+    }
+
+    /**
+     * 从最近消息缓存中读取 ID 小于 cursor 的消息，缓存不可用时返回空列表
+     * <p>
+     * 按 member 的字典序倒序从 cursor 处开始读取，只读取和解析一页，与缓存的条数无关
+     */
+    private List<Message> cachedBefore(long conversationId, long cursor, int size) {
+        Set<String> recent;
+        try {
+            recent = template.opsForZSet().reverseRangeByLex(Const.HISTORY + conversationId,
+                    Range.leftUnbounded(Range.Bound.exclusive(paddedId(cursor))), Limit.limit().count(size));
+        } catch (RuntimeException e) {
+            log.warn("Failed to read history cache: {}", e.getMessage());
+            return List.of();
+        }
+        if (recent == null) return List.of();
+        List<Message> messages = new ArrayList<>(recent.size());
+        for (String member : recent) {
+            messages.add(JSON.parseObject(member.substring(ID_WIDTH + 1), Message.class));
+        }
+        return messages;
+    }
+
+    private static String paddedId(long id) {
+        String digits = Long.toString(id);
+        return "0".repeat(ID_WIDTH - digits.length()) + digits;
+    }
+
+    /**
+     * 把已写入数据库的一批消息推入各会话的最近消息列表，一次管道往返完成
+     */
+    private void cacheRecent(List<Message> batch) {
+        // 有消息尚未写入的会话缓存必须保持为空，否则之后的消息会越过这些消息
+        List<Message> cacheable = unpersisted.isEmpty() ? batch
+                : batch.stream().filter(message -> !unpersisted.containsKey(message.getConversationId())).toList();
+        if (cacheable.isEmpty()) return;
+        Set<Long> conversations = new HashSet<>();
+        try {
+            template.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    for (Message message : cacheable) {
+                        String key = Const.HISTORY + message.getConversationId();
+                        operations.opsForZSet().add(key, paddedId(message.getId()) + ':' + JSON.toJSONString(message), 0);
+                        conversations.add(message.getConversationId());
+                    }
+                    for (Long conversation : conversations) {
+                        String key = Const.HISTORY + conversation;
+                        // 只保留 ID 最大的 historyCacheSize 条
+                        operations.opsForZSet().removeRange(key, 0, -historyCacheSize - 1);
+                        operations.expire(key, historyCacheTtlDays, TimeUnit.DAYS);
+                    }
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            // 缓存必须是连续的最近消息，更新失败时删除这些会话的缓存，之后从数据库读取
+            log.warn("Failed to update history cache: {}", e.getMessage());
+            evictRecent(conversations);
+        }
+    }
+
+    private void evictRecent(Set<Long> conversations) {
+        try {
+            template.delete(conversations.stream().map(id -> Const.HISTORY + id).toList());
+        } catch (RuntimeException e) {
+            log.warn("Failed to evict history cache: {}", e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        long batchStart = 0;
+        while (running) {
+            try {
+                Entry entry = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    if (batch.isEmpty()) {
+                        batchStart = System.currentTimeMillis();
+                    }
+                    batch.add(entry);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                if (!batch.isEmpty() && (batch.size() >= batchSize
+                        || System.currentTimeMillis() - batchStart >= flushIntervalMillis)) {
+                    flush(batch);
+                } else if (batch.isEmpty()) {
+                    retryParked();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        // 停止前写完剩余消息
+        queue.drainTo(batch);
+        while (!batch.isEmpty()) {
+            List<Entry> chunk = batch.subList(0, Math.min(batchSize, batch.size()));
+            flush(chunk);
+        }
+        lastParkedRetry = 0;
+        retryParked();
+        if (!parked.isEmpty()) {
+            log.error("{} message batches not persisted at shutdown{}", parked.size(),
+                    journal.isEnabled() ? ", they will be replayed from the journal" : "");
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        List<Entry> entries = List.copyOf(batch);
+        batch.clear();
+        // 先重试更早的批次，尽量让 checkpoint 能够前进
+        retryParked();
+        if (!write(entries, MAX_RETRIES)) {
+            park(entries);
+            return;
+        }
+        // 之前的批次都已写入，checkpoint 才能推进到本批末尾
+        if (journal.isEnabled() && parked.isEmpty() && !checkpointHeld) {
+            journal.commit(entries.getLast().position());
+        }
+    }
+
+    /**
+     * 按顺序重试暂存的批次，遇到仍然失败的批次即停止
+     */
+    private void retryParked() {
+        if (parked.isEmpty() || System.currentTimeMillis() - lastParkedRetry < PARKED_RETRY_INTERVAL_MILLIS) return;
+        lastParkedRetry = System.currentTimeMillis();
+        while (!parked.isEmpty() && write(parked.peekFirst(), 1)) {
+            List<Entry> written = parked.pollFirst();
+            release(written);
+            log.info("Persisted {} previously failed messages", written.size());
+            if (journal.isEnabled() && parked.isEmpty() && !checkpointHeld) {
+                journal.commit(written.getLast().position());
+            }
+        }
+    }
+
+    private void park(List<Entry> entries) {
+        parked.addLast(entries);
+        Set<Long> conversations = new HashSet<>();
+        for (Entry entry : entries) {
+            conversations.add(entry.message().getConversationId());
+            unpersisted.merge(entry.message().getConversationId(), 1, Integer::sum);
+        }
+        evictRecent(conversations);
+        if (parked.size() <= MAX_PARKED_BATCHES) {
+            log.error("Failed to persist {} messages, will retry", entries.size());
+            return;
+        }
+        // 被丢弃的消息数据库中也没有，不再阻止缓存
+        List<Entry> dropped = parked.pollFirst();
+        release(dropped);
+        if (journal.isEnabled()) {
+            // 被丢弃的消息仍在日志中，不再推进 checkpoint，重启时由 recover() 重放
+            checkpointHeld = true;
+            log.error("Too many failed batches, {} messages left to journal replay on restart", dropped.size());
+        } else {
+            log.error("Too many failed batches, dropping {} messages", dropped.size());
+        }
+    }
+
+    /**
+     * 暂存批次已写入或被丢弃，减少相关会话未写入的消息计数
+     */
+    private void release(List<Entry> entries) {
+        for (Entry entry : entries) {
+            unpersisted.computeIfPresent(entry.message().getConversationId(), (id, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * 多行 INSERT 写入一批消息，成功后更新最近消息缓存
+     *
+     * @param entries 待写入的消息
+     * @param attempts 最多尝试的次数
+     * @return 是否写入成功
+     */
+    private boolean write(List<Entry> entries, int attempts) {
+        List<Message> messages = entries.stream().map(Entry::message).toList();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                baseMapper.insertBatch(messages);
+                cacheRecent(messages);
+                return true;
+            } catch (Exception e) {
+                log.warn("Failed to persist {} messages (attempt {}): {}", entries.size(), attempt, e.getMessage());
+                if (attempt >= attempts) return false;
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * 队列中的消息及其在预写日志中的结束位置，未启用日志时位置为 0
+     */
+    private record Entry(Message message, long position) {
+    }
+}
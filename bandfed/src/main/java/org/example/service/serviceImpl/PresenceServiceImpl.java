@@ -0,0 +1,235 @@
+package org.example.service.serviceImpl;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.example.cluster.ClusterRouter;
+import org.example.entity.dto.Account.AccountStatus;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.example.mapper.AccountMapper;
+import org.example.netty.session.RoomRegistry;
+import org.example.netty.session.SessionRegistry;
+import org.example.service.PresenceService;
+import org.example.utils.Const;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 在线状态
+ * <p>
+ * 最后一个连接断开后要经过宽限期才视为下线，期间重连不会产生任何状态变化，网络抖动引起的频繁断线重连不会反复通知和写库。
+ * 状态变化先记录在内存中，同一用户多次变化只保留最后一次，定时合并为两条批量 UPDATE 写入 account 表。
+ * <p>
+ * 订阅关系复用房间的成员索引：每个被订阅的用户相当于一个房间，订阅者是成员，状态变化通知按房间的方式发送。
+ */
+@Slf4j
+@Service
+public class PresenceServiceImpl implements PresenceService {
+
+    // 每条 UPDATE 最多包含的用户数
+    private static final int UPDATE_CHUNK = 1000;
+
+    // 最后一个连接断开后多久仍未重连才视为下线
+    @Value("${chat.presence.offline-grace-seconds:10}")
+    int offlineGraceSeconds;
+
+    // 状态变化写入数据库的间隔
+    @Value("${chat.presence.flush-interval-seconds:5}")
+    int flushIntervalSeconds;
+
+    // 每个用户最多订阅的用户数
+    @Value("${chat.presence.max-subscriptions:1000}")
+    int maxSubscriptions;
+
+    @Resource
+    SessionRegistry sessions;
+
+    @Resource
+    ClusterRouter router;
+
+    @Resource
+    AccountMapper mapper;
+
+    @Resource
+    StringRedisTemplate template;
+
+    @Resource
+    RedisMessageListenerContainer container;
+
+    // 被订阅用户 -> 订阅者
+    private RoomRegistry watchers;
+
+    // 等待宽限期结束的下线任务
+    private final Map<Integer, ScheduledFuture<?>> pendingOffline = new ConcurrentHashMap<>();
+
+    // 尚未写入数据库的状态变化
+    private final Map<Integer, AccountStatus> dirty = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        watchers = new RoomRegistry(sessions);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("presence", true));
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+        if (router.isEnabled()) {
+            container.addMessageListener((message, pattern) -> onRemoteChange(
+                    new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(Const.PRESENCE_CHANNEL));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        // 本节点关闭后这些用户不再在线，除非还连接着其他节点
+        for (int uid : sessions.uids()) {
+            if (!router.onlineElsewhere(uid)) {
+                dirty.put(uid, AccountStatus.offline);
+            }
+        }
+        pendingOffline.keySet().forEach(uid -> dirty.put(uid, AccountStatus.offline));
+        flush();
+    }
+
+    @Override
+    public void connected(int uid) {
+        ScheduledFuture<?> pending = pendingOffline.remove(uid);
+        if (pending != null) {
+            // 宽限期内重连，状态不变；下线任务即使已经开始执行，也会因登记已被移除而放弃
+            pending.cancel(false);
+            return;
+        }
+        // 本节点上已有其他连接，或者在其他节点上在线
+        if (sessions.lookup(uid).length > 1 || router.onlineElsewhere(uid)) return;
+        changed(uid, AccountStatus.online);
+    }
+
+    @Override
+    public void disconnected(int uid) {
+        watchers.leaveAll(uid);
+        pendingOffline.compute(uid, (key, previous) -> {
+            if (previous != null) previous.cancel(false);
+            AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+            self.set(scheduler.schedule(() -> expire(uid, self), offlineGraceSeconds, TimeUnit.SECONDS));
+            return self.get();
+        });
+    }
+
+    @Override
+    public boolean subscribe(int subscriber, int target) {
+        if (watchers.roomsOf(subscriber).length >= maxSubscriptions && !watchers.isMember(target, subscriber)) {
+            return false;
+        }
+        watchers.join(target, subscriber);
+        return true;
+    }
+
+    @Override
+    public void unsubscribe(int subscriber, int target) {
+        watchers.leave(target, subscriber);
+    }
+
+    @Override
+    public boolean isOnline(int uid) {
+        return sessions.lookup(uid).length > 0 || pendingOffline.containsKey(uid) || router.onlineElsewhere(uid);
+    }
+
+    /**
+     * 宽限期结束，只在登记的仍是本任务时下线；期间重连过或又产生了新的下线任务时由它们处理
+     *
+     * @param uid 用户 ID
+     * @param self 本任务的 future，在 pendingOffline 的同一把桶锁内设置和比较
+     */
+    private void expire(int uid, AtomicReference<ScheduledFuture<?>> self) {
+        boolean[] current = {false};
+        pendingOffline.computeIfPresent(uid, (key, pending) -> {
+            if (pending != self.get()) return pending;
+            current[0] = true;
+            return null;
+        });
+        if (!current[0]) return;
+        if (sessions.lookup(uid).length > 0 || router.onlineElsewhere(uid)) return;
+        changed(uid, AccountStatus.offline);
+    }
+
+    /**
+     * 记录状态变化并通知订阅者，集群模式下同时通知其他节点上的订阅者
+     */
+    private void changed(int uid, AccountStatus status) {
+        dirty.put(uid, status);
+        notifyWatchers(uid, status.name());
+        if (!router.isEnabled()) return;
+        try {
+            template.convertAndSend(Const.PRESENCE_CHANNEL, uid + ":" + status.name() + ":" + router.getNodeId());
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish presence of {}: {}", uid, e.getMessage());
+        }
+    }
+
+    private void onRemoteChange(String event) {
+        String[] parts = event.split(":");
+        if (parts.length != 3 || Integer.parseInt(parts[2]) == router.getNodeId()) return;
+        notifyWatchers(Integer.parseInt(parts[0]), parts[1]);
+    }
+
+    private void notifyWatchers(int uid, String status) {
+        watchers.fanOut(ByteBufAllocator.DEFAULT, uid, new ChatMessage()
+                .setType(MessageType.PRESENCE)
+                .setFromUserId(uid)
+                .setContent(status));
+    }
+
+    /**
+     * 把积累的状态变化合并为批量 UPDATE 写入数据库，失败时放回等待下次写入
+     */
+    private void flush() {
+        if (dirty.isEmpty()) return;
+        List<Integer> online = new ArrayList<>();
+        List<Integer> offline = new ArrayList<>();
+        for (Integer uid : dirty.keySet()) {
+            AccountStatus status = dirty.remove(uid);
+            if (status == AccountStatus.online) {
+                online.add(uid);
+            } else if (status == AccountStatus.offline) {
+                offline.add(uid);
+            }
+        }
+        update(online, AccountStatus.online);
+        update(offline, AccountStatus.offline);
+    }
+
+    private void update(List<Integer> uids, AccountStatus status) {
+        for (int from = 0; from < uids.size(); from += UPDATE_CHUNK) {
+            List<Integer> chunk = uids.subList(from, Math.min(uids.size(), from + UPDATE_CHUNK));
+            try {
+                if (status == AccountStatus.online) {
+                    mapper.markOnline(chunk);
+                } else {
+                    mapper.markOffline(chunk);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to update status of {} accounts: {}", chunk.size(), e.getMessage());
+                // 期间又有新变化的用户以新状态为准
+                chunk.forEach(uid -> dirty.putIfAbsent(uid, status));
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.service.serviceImpl;
+
+import jakarta.annotation.Resource;
+import org.example.service.RoomService;
+import org.example.utils.Const;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * 基于 Redis 的房间成员关系
+ * <p>
+ * 每个房间一个 SET，只随 JOIN / LEAVE 变化。RoomRegistry 只记录本节点在线连接的成员，用于投递，
+ * 连接断开时会清空；查询历史等与在线无关的鉴权以这里为准。
+ */
+@Service
+public class RoomServiceImpl implements RoomService {
+
+    @Resource
+    StringRedisTemplate template;
+
+    @Override
+    public void join(int roomId, int uid) {
+        template.opsForSet().add(Const.ROOM_MEMBERS + roomId, String.valueOf(uid));
+    }
+
+    @Override
+    public void leave(int roomId, int uid) {
+        template.opsForSet().remove(Const.ROOM_MEMBERS + roomId, String.valueOf(uid));
+    }
+
+    @Override
+    public boolean isMember(int roomId, int uid) {
+        return Boolean.TRUE.equals(template.opsForSet().isMember(Const.ROOM_MEMBERS + roomId, String.valueOf(uid)));
+    }
+}
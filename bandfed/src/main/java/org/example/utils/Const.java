@@ -3,5 +3,37 @@ package org.example.utils;
 public class Const {
     public static final String JWT_BLACK_LIST = "jwt:blacklist:";
 
+    // 注销令牌时广播给所有节点的频道
+    public static final String JWT_BLACK_LIST_CHANNEL = "jwt:blacklist";
+
+    // 离线收件箱（ZSET，score 为 seq）及其序号计数器
+    public static final String INBOX = "chat:inbox:";
+
+    public static final String INBOX_SEQ = "chat:inbox:seq:";
+
+    // 每个会话的序号计数器
+    public static final String CONVERSATION_SEQ = "chat:conversation:seq:";
+
+    // 每个会话最近消息的缓存（ZSET，score 均为 0，member 为补齐到 19 位的消息 ID + ':' + JSON，按字典序即按 ID 排序）
+    public static final String HISTORY = "chat:history:recent:";
+
+    // 房间成员（SET，member 为 uid），只随 JOIN / LEAVE 变化，不受连接断开影响
+    public static final String ROOM_MEMBERS = "chat:room:members:";
+
+    // 用户所在节点（ZSET，member 为节点号，score 为过期时间）
+    public static final String CLUSTER_PRESENCE = "chat:presence:";
+
+    // 每个节点订阅的定向投递频道
+    public static final String CLUSTER_NODE_CHANNEL = "chat:node:";
+
+    // 节点号租约（STRING，值为持有者的进程标识），保证集群中节点号不重复
+    public static final String CLUSTER_NODE_LEASE = "chat:node-lease:";
+
+    // 所有节点订阅的广播频道
+    public static final String CLUSTER_BROADCAST_CHANNEL = "chat:broadcast";
+
+    // 在线状态变化通知频道，消息格式为 uid:状态:来源节点
+    public static final String PRESENCE_CHANNEL = "chat:presence-events";
+
     public static final int ORDER_CORS = -102;
 }
@@ -6,31 +6,99 @@ import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongBiFunction;
 
+@Slf4j
 @Component
 public class JwtUtils {
+    // 加载黑名单时每批扫描并查询有效期的键数量
+    private static final int LOAD_BATCH_SIZE = 1000;
+
     @Value("${spring.security.jwt.key}")
     String SECRET_KEY;
 
     @Value("${spring.security.jwt.expire}")
     int expire;
 
+    // 本地缓存的已校验令牌数量上限
+    @Value("${spring.security.jwt.cache-size:10000}")
+    int cacheSize;
+
     @Resource
     StringRedisTemplate template;
 
+    @Resource
+    MeterRegistry meterRegistry;
+
+    // HMAC256 算法和校验器都是线程安全的，只创建一次
+    private Algorithm algorithm;
+
+    private JWTVerifier verifier;
+
+    // 已校验令牌的近端缓存，条目在令牌过期时失效
+    private Cache<String, DecodedJWT> verified;
+
+    // 本地黑名单（jwt id -> 过期时间），通过 Redis 发布订阅与其他节点同步
+    private Cache<String, Long> blacklist;
+
+    // 是否已从 Redis 加载完整黑名单且订阅仍然有效，否则回退到 Redis 查询
+    private volatile boolean blacklistLoaded;
+
+    // 每次订阅可能中断时加一，加载期间发生中断则本次加载不算完成，与 blacklistLoaded 一起在 this 上同步修改
+    private int blacklistEpoch;
+
+    // 未命中本地缓存时的签名校验耗时
+    private Timer verifyTimer;
+
+    // 回退到 Redis 查询黑名单的次数
+    private Counter blacklistLookups;
+
+    @PostConstruct
+    public void init() {
+        algorithm = Algorithm.HMAC256(SECRET_KEY);
+        verifier = JWT.require(algorithm).build();
+        verified = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(expireAt((String token, DecodedJWT jwt) -> jwt.getExpiresAt().getTime()))
+                .build();
+        blacklist = Caffeine.newBuilder()
+                .expireAfter(expireAt((String id, Long expiresAt) -> expiresAt))
+                .build();
+        verifyTimer = Timer.builder("chat.jwt.verify")
+                .description("JWT signature verification on local cache misses")
+                .register(meterRegistry);
+        blacklistLookups = Counter.builder("chat.jwt.blacklist.redis")
+                .description("JWT blacklist lookups that fell back to Redis")
+                .register(meterRegistry);
+    }
+
     /**
      * 生成 Token
      *
@@ -40,7 +108,6 @@ public class JwtUtils {
      * @return 创建的 JWT 字符串。
      */
     public String createJwt(UserDetails details,int id,String username){
-        Algorithm algorithm = Algorithm.HMAC256(SECRET_KEY);
         Date expire = this.expireTime();
         return JWT.create()
                 .withJWTId(UUID.randomUUID().toString())
@@ -53,15 +120,18 @@ public class JwtUtils {
     }
 
     public boolean isInvalidToken(String uuid){
+        if (blacklist.getIfPresent(uuid) != null)
+            return true;
+        if (blacklistLoaded)
+            return false;
+        blacklistLookups.increment();
         return Boolean.TRUE.equals(template.hasKey(Const.JWT_BLACK_LIST + uuid));
     }
 
     public boolean invalidateJwt(String handleToken){
         String token = convertToken(handleToken);
         if(token == null) return false;
-        Algorithm algorithm = Algorithm.HMAC256(SECRET_KEY);
-        JWTVerifier jwtVerifier = JWT.require(algorithm).build();
-        DecodedJWT jwt = jwtVerifier.verify(token);
+        DecodedJWT jwt = verifier.verify(token);
         String id = jwt.getId();
         return deleteToken(id,jwt.getExpiresAt());
     }
@@ -70,26 +140,123 @@ public class JwtUtils {
         if(this.isInvalidToken(uuid))
             return false;
         Date now = new Date();
-        long diff = time.getTime() - now.getTime();
-        long expire = Math.max(time.getTime()-now.getTime(),0);
-        template.opsForValue().set(Const.JWT_BLACK_LIST + uuid,"",expire, TimeUnit.MICROSECONDS);
+        long expire = time.getTime() - now.getTime();
+        if (expire > 0) {
+            template.opsForValue().set(Const.JWT_BLACK_LIST + uuid, "", expire, TimeUnit.MILLISECONDS);
+            // 通知所有节点（包括自己）更新本地黑名单
+            template.convertAndSend(Const.JWT_BLACK_LIST_CHANNEL, uuid + ":" + time.getTime());
+        }
+        blacklist.put(uuid, time.getTime());
         return true;
     }
 
+    /**
+     * 收到其他节点注销令牌的通知，加入本地黑名单
+     *
+     * @param message 格式为 jwtId:过期时间戳
+     */
+    public void onBlacklisted(String message){
+        int index = message.lastIndexOf(':');
+        if (index <= 0) return;
+        blacklist.put(message.substring(0, index), Long.parseLong(message.substring(index + 1)));
+    }
+
+    /**
+     * 从 Redis 加载已有的黑名单，加载成功后令牌校验不再访问 Redis
+     * <p>
+     * 需要在订阅黑名单频道之后调用，避免漏掉加载期间注销的令牌；加载期间订阅中断时仍保持回退到 Redis 查询
+     */
+    public void loadBlacklist(){
+        int epoch;
+        synchronized (this) {
+            epoch = blacklistEpoch;
+        }
+        ScanOptions options = ScanOptions.scanOptions().match(Const.JWT_BLACK_LIST + "*").count(LOAD_BATCH_SIZE).build();
+        List<String> keys = new ArrayList<>(LOAD_BATCH_SIZE);
+        try (Cursor<String> cursor = template.scan(options)) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+                if (keys.size() == LOAD_BATCH_SIZE) {
+                    loadBlacklist(keys);
+                    keys.clear();
+                }
+            }
+        }
+        loadBlacklist(keys);
+        synchronized (this) {
+            if (blacklistEpoch != epoch) return;
+            blacklistLoaded = true;
+        }
+        log.debug("JWT blacklist loaded: {} entries", blacklist.estimatedSize());
+    }
+
+    // 一批键的剩余有效期通过流水线一次查询，避免每个键一次往返
+    private void loadBlacklist(List<String> keys){
+        if (keys.isEmpty()) return;
+        List<Object> ttls = template.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (String key : keys)
+                    operations.getExpire(key, TimeUnit.MILLISECONDS);
+                return null;
+            }
+        });
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < keys.size(); i++) {
+            if (ttls.get(i) instanceof Long ttl && ttl > 0)
+                blacklist.put(keys.get(i).substring(Const.JWT_BLACK_LIST.length()), now + ttl);
+        }
+    }
+
+    /**
+     * 黑名单是否已完整加载且订阅未中断，未加载时需要调用 {@link #loadBlacklist()}
+     */
+    public boolean isBlacklistLoaded(){
+        return blacklistLoaded;
+    }
+
+    /**
+     * 黑名单频道的订阅可能已中断（连接断开、监听容器重启），期间发布的注销通知会丢失，
+     * 在重新加载之前令牌校验回退到 Redis 查询
+     */
+    public synchronized void blacklistStale(){
+        blacklistEpoch++;
+        if (blacklistLoaded) {
+            blacklistLoaded = false;
+            log.info("JWT blacklist subscription interrupted, falling back to Redis until reloaded");
+        }
+    }
+
     public DecodedJWT resolveJwt(String headerToken){
         String token = convertToken(headerToken);
         if(token == null) return null;
-        Algorithm algorithm = Algorithm.HMAC256(SECRET_KEY);
-        JWTVerifier jwtVerifier = JWT.require(algorithm).build();
-        try{
-            DecodedJWT verify = jwtVerifier.verify(token);
-            if(this.isInvalidToken(verify.getId()))
-                return  null;
-            Date expiresAt = verify.getExpiresAt();
-            return new Date().after(expiresAt)? null : verify;
-        }catch (JWTVerificationException e){
-            return null;
+        return resolveToken(token);
+    }
+
+    /**
+     * 校验不带 Bearer 前缀的令牌
+     *
+     * @param token JWT 字符串
+     * @return 校验通过的 JWT，无效、过期或已注销时返回 null
+     */
+    public DecodedJWT resolveToken(String token){
+        DecodedJWT verify = verified.getIfPresent(token);
+        if (verify == null) {
+            long start = System.nanoTime();
+            try{
+                verify = verifier.verify(token);
+            }catch (JWTVerificationException e){
+                return null;
+            }finally {
+                verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            verified.put(token, verify);
         }
+        if(this.isInvalidToken(verify.getId()))
+            return  null;
+        Date expiresAt = verify.getExpiresAt();
+        return new Date().after(expiresAt)? null : verify;
     }
 
     public Date expireTime(){
@@ -120,10 +287,30 @@ public class JwtUtils {
     }
 
     public Integer getUid(String token){
-        DecodedJWT jwt1 = JWT.require(Algorithm.HMAC256(SECRET_KEY))
-                .build()
-                .verify(token);
+        DecodedJWT jwt1 = verifier.verify(token);
         return jwt1.getClaim("id").asInt();
     }
 
+    /**
+     * 条目在给定的绝对时间点过期
+     */
+    private static <K, V> Expiry<K, V> expireAt(ToLongBiFunction<K, V> expiresAt){
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(K key, V value, long currentTime) {
+                return TimeUnit.MILLISECONDS.toNanos(Math.max(expiresAt.applyAsLong(key, value) - System.currentTimeMillis(), 0));
+            }
+
+            @Override
+            public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+                return expireAfterCreate(key, value, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package org.example.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 雪花 ID 生成器：41 位毫秒时间戳 + 10 位节点 ID + 12 位序列号
+ * <p>
+ * 同一节点生成的 ID 严格递增，不同节点之间按时间大致有序，可以直接用作游标分页的键
+ */
+@Component
+public class SnowflakeIdGenerator {
+
+    // 2025-01-01T00:00:00Z
+    private static final long EPOCH = 1735689600000L;
+
+    private static final int NODE_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private final long node;
+
+    private long lastTimestamp = -1;
+
+    private long sequence;
+
+    public SnowflakeIdGenerator(@Value("${chat.node-id:0}") int nodeId) {
+        if (nodeId < 0 || nodeId >= (1 << NODE_BITS)) {
+            throw new IllegalArgumentException("chat.node-id must be between 0 and " + ((1 << NODE_BITS) - 1));
+        }
+        this.node = nodeId;
+    }
+
+    public synchronized long nextId() {
+        long now = System.currentTimeMillis();
+        // 时钟回拨时沿用上一次的时间戳，保证递增
+        if (now < lastTimestamp) {
+            now = lastTimestamp;
+        }
+        if (now == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                // 当前毫秒的序列号用完，借用下一毫秒
+                now = ++lastTimestamp;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = now;
+        return ((now - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+}
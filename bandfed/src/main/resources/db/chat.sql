@@ -0,0 +1,23 @@
+-- 聊天消息
+CREATE TABLE IF NOT EXISTS messages
+(
+    id               BIGINT       NOT NULL COMMENT '雪花 ID',
+    conversation_id  BIGINT       NOT NULL COMMENT '会话 ID，广播为 0',
+    conversation_seq BIGINT       NOT NULL COMMENT '会话内序号',
+    from_uid         INT          NOT NULL,
+    to_uid           INT          NULL COMMENT '广播为 NULL',
+    type             VARCHAR(16)  NOT NULL,
+    content          TEXT         NOT NULL,
+    create_time      DATETIME(3)  NOT NULL,
+    -- 聚簇索引按 (conversation_id, id) 组织，会话历史按 id 倒序分页时直接在聚簇索引上范围扫描，
+    -- 同一会话的消息存放在相邻的页中，不需要回表；content 是 TEXT，无法放进二级索引做覆盖索引
+    PRIMARY KEY (conversation_id, id),
+    -- 按 ID 查询和 INSERT IGNORE 去重
+    UNIQUE INDEX uk_id (id)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+-- 登录按用户名或邮箱分别查询（不使用 OR），两列都需要索引
+ALTER TABLE account
+    ADD UNIQUE INDEX uk_username (username),
+    ADD INDEX idx_email (email);
@@ -0,0 +1,169 @@
+package org.example.cluster;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.example.netty.NettyCounters;
+import org.example.netty.session.RoomRegistry;
+import org.example.netty.session.SessionRegistry;
+import org.example.service.InboxService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 两个进程内节点共享一个本地 Redis，验证跨节点的私聊、广播和离线转存
+ */
+class ClusterRouterTest {
+
+    private static RedisServer redis;
+
+    private static int port;
+
+    private Node a;
+
+    private Node b;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redis = new RedisServer(port);
+        redis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void startNodes() {
+        a = new Node(1);
+        b = new Node(2);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        a.stop();
+        b.stop();
+    }
+
+    @Test
+    void routesPrivateMessageToOtherNode() throws InterruptedException {
+        EmbeddedChannel channel = b.connect(42);
+
+        assertTrue(a.router.sendToUser(42, new ChatMessage().setType(MessageType.PRIVATE).setContent("hi")));
+
+        ChatMessage received = awaitOutbound(channel);
+        assertEquals("hi", received.getContent());
+    }
+
+    @Test
+    void broadcastsToEveryNodeOnce() throws InterruptedException {
+        EmbeddedChannel local = a.connect(1);
+        EmbeddedChannel remote = b.connect(2);
+
+        a.router.broadcast(ByteBufAllocator.DEFAULT, new ChatMessage().setType(MessageType.BROADCAST).setContent("all"));
+
+        TextWebSocketFrame frame = awaitOutbound(remote);
+        assertTrue(frame.text().contains("all"));
+        frame.release();
+        TextWebSocketFrame own = local.readOutbound();
+        own.release();
+        Thread.sleep(200);
+        // 本节点不会再收到自己发布的广播
+        assertNull(local.readOutbound());
+    }
+
+    @Test
+    void storesOfflineWhenPresenceIsStale() {
+        // 登记还在，但用户已经断开
+        b.router.online(7);
+
+        assertTrue(a.router.sendToUser(7, new ChatMessage().setType(MessageType.PRIVATE).setContent("later")));
+        verify(b.inbox, timeout(2000)).push(eq(7), any(ChatMessage.class));
+    }
+
+    @Test
+    void reportsUnknownUser() {
+        assertFalse(a.router.sendToUser(404, new ChatMessage().setType(MessageType.PRIVATE).setContent("?")));
+    }
+
+    @Test
+    void stopKeepsLeaseTakenOverByAnotherNode() {
+        Node c = new Node(3);
+        StringRedisTemplate template = new StringRedisTemplate(a.factory);
+        // 节点 3 的租约过期后被另一个进程占用，节点 3 关闭时不能删除它
+        template.opsForValue().set("chat:node-lease:3", "other");
+        c.stop();
+        assertEquals("other", template.opsForValue().get("chat:node-lease:3"));
+        template.delete("chat:node-lease:3");
+    }
+
+    private static <T> T awaitOutbound(EmbeddedChannel channel) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            T message = channel.readOutbound();
+            if (message != null) return message;
+            Thread.sleep(20);
+        }
+        return fail("No message delivered");
+    }
+
+    private static class Node {
+
+        final LettuceConnectionFactory factory;
+
+        final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+
+        final SessionRegistry sessions = new SessionRegistry();
+
+        final InboxService inbox = mock(InboxService.class);
+
+        final ClusterRouter router;
+
+        Node(int nodeId) {
+            factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+            factory.afterPropertiesSet();
+            factory.start();
+            container.setConnectionFactory(factory);
+            container.afterPropertiesSet();
+            router = new ClusterRouter(sessions, new RoomRegistry(sessions), new StringRedisTemplate(factory), container,
+                    inbox, new NettyCounters(), true, nodeId, 30);
+            router.start();
+            container.start();
+        }
+
+        EmbeddedChannel connect(int uid) {
+            EmbeddedChannel channel = new EmbeddedChannel();
+            sessions.register(uid, channel);
+            sessions.online(channel);
+            router.online(uid);
+            return channel;
+        }
+
+        void stop() {
+            router.stop();
+            container.stop();
+            factory.destroy();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.config;
+
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.example.entity.dto.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class AccountCacheTest {
+
+    private final AccountCache cache = new AccountCache();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "cacheSize", 100);
+        ReflectionTestUtils.setField(cache, "cacheTtlSeconds", 300);
+        cache.init();
+        cache.put("alice", account(1, "alice", "alice@example.org"));
+        cache.put("alice@example.org", account(1, "alice", "alice@example.org"));
+        cache.put("bob", account(2, "bob", "bob@example.org"));
+    }
+
+    @Test
+    void renameEvictsOldLogins() throws Throwable {
+        MapperMethod.ParamMap<Object> params = new MapperMethod.ParamMap<>();
+        params.put("et", new Account().setUid(1).setUsername("alice2"));
+        write("updateById", params);
+
+        assertNull(cache.get("alice"));
+        assertNull(cache.get("alice@example.org"));
+        assertNotNull(cache.get("bob"));
+    }
+
+    @Test
+    void staleLoginIsNotServedAfterReload() {
+        // 改名发生在其他节点，本节点只看到了新名字重新加载
+        cache.put("alice2", account(1, "alice2", "alice@example.org"));
+        assertNull(cache.get("alice"));
+        assertNotNull(cache.get("alice@example.org"));
+    }
+
+    @Test
+    void statusUpdateEvictsOnlyItsAccounts() throws Throwable {
+        MapperMethod.ParamMap<Object> params = new MapperMethod.ParamMap<>();
+        params.put("uids", List.of(2));
+        write("markOnline", params);
+
+        assertNotNull(cache.get("alice"));
+        assertNull(cache.get("bob"));
+    }
+
+    @Test
+    void wrapperUpdateEvictsEverything() throws Throwable {
+        MapperMethod.ParamMap<Object> params = new MapperMethod.ParamMap<>();
+        params.put("et", new Account().setPassword("hash"));
+        params.put("ew", new Object());
+        write("update", params);
+
+        assertNull(cache.get("alice"));
+        assertNull(cache.get("bob"));
+    }
+
+    private void write(String method, Object parameter) throws Throwable {
+        MappedStatement statement = new MappedStatement.Builder(new Configuration(),
+                "org.example.mapper.AccountMapper." + method, mock(SqlSource.class), SqlCommandType.UPDATE).build();
+        cache.intercept(new Invocation(mock(Executor.class),
+                Executor.class.getMethod("update", MappedStatement.class, Object.class),
+                new Object[]{statement, parameter}));
+    }
+
+    private static Account account(int uid, String username, String email) {
+        return new Account().setUid(uid).setUsername(username).setEmail(email);
+    }
+}
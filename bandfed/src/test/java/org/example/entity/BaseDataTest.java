@@ -0,0 +1,37 @@
+package org.example.entity;
+
+import org.example.entity.dto.Message;
+import org.example.entity.vo.response.MessageVO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaseDataTest {
+
+    @Test
+    void copiesFieldsWithSameName() {
+        LocalDateTime now = LocalDateTime.now();
+        Message message = new Message(42L, 7L, 3L, 1, 2, "private", "hello", now);
+        MessageVO vo = message.asViewObject(MessageVO.class);
+        assertEquals(42L, vo.getId());
+        assertEquals(3L, vo.getConversationSeq());
+        assertEquals(1, vo.getFromUid());
+        assertEquals(2, vo.getToUid());
+        assertEquals("private", vo.getType());
+        assertEquals("hello", vo.getContent());
+        assertEquals(now, vo.getCreateTime());
+    }
+
+    @Test
+    void mapsEachElementOfList() {
+        List<Message> messages = List.of(
+                new Message().setId(1L).setContent("a"),
+                new Message().setId(2L).setContent("b"));
+        List<MessageVO> views = messages.getFirst().asViewObjectList(messages, MessageVO.class);
+        assertEquals(List.of(1L, 2L), views.stream().map(MessageVO::getId).toList());
+        assertEquals(List.of("a", "b"), views.stream().map(MessageVO::getContent).toList());
+    }
+}
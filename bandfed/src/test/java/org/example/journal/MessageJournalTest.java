@@ -0,0 +1,92 @@
+package org.example.journal;
+
+import org.example.entity.dto.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversMessagesAfterCheckpoint() throws Exception {
+        MessageJournal journal = open(1 << 16);
+        journal.recover((message, position) -> { });
+        long first = journal.append(message(1));
+        journal.append(message(2));
+        journal.append(message(3));
+        journal.commit(first);
+        journal.close();
+
+        List<Message> recovered = new ArrayList<>();
+        MessageJournal reopened = open(1 << 16);
+        reopened.recover((message, position) -> recovered.add(message));
+
+        assertEquals(List.of(2L, 3L), recovered.stream().map(Message::getId).toList());
+        assertEquals("content 2", recovered.getFirst().getContent());
+        reopened.close();
+    }
+
+    @Test
+    void truncatesTornRecordAndKeepsAppending() throws Exception {
+        MessageJournal journal = open(1 << 16);
+        journal.recover((message, position) -> { });
+        long end = journal.append(message(1));
+        journal.close();
+        // 模拟写入长度后崩溃：长度不为 0，正文和校验和不完整
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("0000000000.log").toFile(), "rw")) {
+            file.seek((int) end);
+            file.writeInt(100);
+        }
+
+        MessageJournal reopened = open(1 << 16);
+        assertEquals(1, reopened.recover((message, position) -> { }));
+        reopened.append(message(2));
+        reopened.close();
+
+        List<Long> ids = new ArrayList<>();
+        open(1 << 16).recover((message, position) -> ids.add(message.getId()));
+        assertEquals(List.of(1L, 2L), ids);
+    }
+
+    @Test
+    void rollsSegmentsAndDeletesCommittedOnes() throws Exception {
+        MessageJournal journal = open(512);
+        journal.recover((message, position) -> { });
+        long last = 0;
+        for (int i = 1; i <= 20; i++) {
+            last = journal.append(message(i));
+        }
+        assertTrue(Files.exists(dir.resolve("0000000001.log")));
+        journal.commit(last);
+        journal.close();
+
+        assertFalse(Files.exists(dir.resolve("0000000000.log")));
+        assertEquals(0, open(512).recover((message, position) -> { }));
+    }
+
+    private MessageJournal open(int segmentSize) throws Exception {
+        MessageJournal journal = new MessageJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "dir", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(journal, "fsync", "none");
+        journal.init();
+        return journal;
+    }
+
+    private static Message message(long id) {
+        return new Message(id, Message.conversationId(1, 2), id, 1, 2, "private", "content " + id, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.netty;
+
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadEventExecutorGroupTest {
+
+    private final VirtualThreadEventExecutorGroup group = new VirtualThreadEventExecutorGroup("test-business");
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).await();
+    }
+
+    @Test
+    void runsTasksOfOneExecutorInOrder() throws InterruptedException {
+        EventExecutor executor = group.next();
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        for (int i = 0; i < 5000; i++) {
+            int n = i;
+            executor.execute(() -> {
+                assertTrue(executor.inEventLoop());
+                seen.add(n);
+            });
+        }
+        executor.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 5000).boxed().toList(), seen);
+    }
+
+    @Test
+    void blockedExecutorDoesNotStallOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch other = new CountDownLatch(1);
+        group.next().execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        group.next().execute(other::countDown);
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryChatCodecTest {
+
+    private final BinaryChatCodec codec = new BinaryChatCodec();
+
+    @Test
+    void decodesPrivateMessage() {
+        ByteBuf in = Unpooled.buffer();
+        byte[] body = "你好".getBytes(StandardCharsets.UTF_8);
+        in.writeByte(BinaryChatCodec.TAG_PRIVATE);
+        BinaryChatCodec.writeVarint(in, 300);
+        BinaryChatCodec.writeVarint(in, 0);
+        BinaryChatCodec.writeVarlong(in, 0);
+        BinaryChatCodec.writeVarlong(in, 0);
+        BinaryChatCodec.writeVarlong(in, 0);
+        BinaryChatCodec.writeVarint(in, body.length);
+        in.writeBytes(body);
+        BinaryWebSocketFrame frame = new BinaryWebSocketFrame(in);
+
+        ChatMessage message = codec.decode(frame);
+        frame.release();
+
+        assertEquals(MessageType.PRIVATE, message.getType());
+        assertEquals(300, message.getTargetUserId());
+        assertNull(message.getMessageId());
+        assertEquals("你好", message.getContent());
+    }
+
+    @Test
+    void encodesSenderAsUid() {
+        ChatMessage message = new ChatMessage()
+                .setType(MessageType.BROADCAST)
+                .setFromUserId(Integer.MAX_VALUE)
+                .setMessageId(Long.MAX_VALUE)
+                .setSeq(42L)
+                .setConversationSeq(7L)
+                .setContent("hello");
+        WebSocketFrame frame = codec.encode(ByteBufAllocator.DEFAULT, message);
+        ByteBuf out = frame.content();
+
+        assertEquals(BinaryChatCodec.TAG_BROADCAST, out.readByte());
+        assertEquals(Integer.MAX_VALUE, BinaryChatCodec.readVarint(out));
+        assertEquals(0, BinaryChatCodec.readVarint(out));
+        assertEquals(Long.MAX_VALUE, BinaryChatCodec.readVarlong(out));
+        assertEquals(42L, BinaryChatCodec.readVarlong(out));
+        assertEquals(7L, BinaryChatCodec.readVarlong(out));
+        assertEquals(5, BinaryChatCodec.readVarint(out));
+        assertEquals("hello", out.toString(StandardCharsets.UTF_8));
+        frame.release();
+    }
+
+    @Test
+    void rejectsTruncatedBody() {
+        ByteBuf in = Unpooled.buffer();
+        in.writeByte(BinaryChatCodec.TAG_BROADCAST);
+        BinaryChatCodec.writeVarint(in, 0);
+        BinaryChatCodec.writeVarint(in, 0);
+        BinaryChatCodec.writeVarlong(in, 0);
+        BinaryChatCodec.writeVarlong(in, 0);
+        BinaryChatCodec.writeVarlong(in, 0);
+        BinaryChatCodec.writeVarint(in, 10);
+        in.writeByte('x');
+        BinaryWebSocketFrame frame = new BinaryWebSocketFrame(in);
+
+        assertThrows(CorruptedFrameException.class, () -> codec.decode(frame));
+        frame.release();
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.netty.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonChatCodecTest {
+
+    private static final String JSON = "{\"type\":\"private\",\"targetUserId\":2,\"content\":\"你好\"}";
+
+    private final JsonChatCodec codec = new JsonChatCodec();
+
+    @Test
+    void decodesHeapAndDirectBuffers() {
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        // 堆内缓冲区带偏移，验证使用了 arrayOffset 和 readerIndex
+        ByteBuf heap = Unpooled.wrappedBuffer(new byte[3], bytes).slice(3, bytes.length);
+        ByteBuf direct = Unpooled.directBuffer().writeBytes(bytes);
+        for (ByteBuf content : new ByteBuf[]{heap, direct}) {
+            TextWebSocketFrame frame = new TextWebSocketFrame(content);
+            ChatMessage message = codec.decode(frame);
+            frame.release();
+            assertEquals(MessageType.PRIVATE, message.getType());
+            assertEquals(2, message.getTargetUserId());
+            assertEquals("你好", message.getContent());
+        }
+    }
+
+    @Test
+    void encodesIntoAllocatorBuffer() {
+        ChatMessage message = new ChatMessage().setType(MessageType.PRIVATE).setFromUserId(1).setMessageId(42L)
+                .setContent("你好");
+        WebSocketFrame frame = codec.encode(PooledByteBufAllocator.DEFAULT, message);
+        try {
+            assertInstanceOf(TextWebSocketFrame.class, frame);
+            assertEquals(message, codec.decode(frame));
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    void writesSnowflakeIdAsString() {
+        long id = (1L << 53) + 1;
+        ChatMessage message = new ChatMessage().setType(MessageType.PRIVATE).setMessageId(id);
+        WebSocketFrame frame = codec.encode(PooledByteBufAllocator.DEFAULT, message);
+        try {
+            assertTrue(((TextWebSocketFrame) frame).text().contains("\"messageId\":\"" + id + "\""));
+            assertEquals(id, codec.decode(frame).getMessageId());
+        } finally {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.netty.session;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.example.netty.codec.ChatFrameCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomRegistryTest {
+
+    private final SessionRegistry sessions = new SessionRegistry();
+
+    private final RoomRegistry rooms = new RoomRegistry(sessions);
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new ChatFrameCodec());
+
+    @AfterEach
+    void close() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void joinAfterLastConnectionClosedLeavesNoMember() {
+        sessions.register(1, channel);
+        assertTrue(rooms.join(7, 1));
+        sessions.unregister(channel);
+        rooms.leaveAll(1);
+        // 连接关闭后才处理到的 JOIN 不再加入，否则该成员没有任何连接会替它执行 leaveAll
+        assertFalse(rooms.join(8, 1));
+        assertArrayEquals(new int[0], rooms.members(7));
+        assertArrayEquals(new int[0], rooms.members(8));
+        assertArrayEquals(new int[0], rooms.roomsOf(1));
+    }
+
+    @Test
+    void broadcastAndRoomFanOutWriteTheSameFrames() {
+        sessions.register(1, channel);
+        sessions.online(channel);
+        rooms.join(7, 1);
+        ChatMessage message = new ChatMessage().setType(MessageType.ROOM).setRoomId(7).setContent("hi");
+
+        assertEquals(1, sessions.broadcast(ByteBufAllocator.DEFAULT, message));
+        assertEquals(1, rooms.fanOut(ByteBufAllocator.DEFAULT, 7, message));
+        // 两条路径都在连接的 EventLoop 上从编解码器之前写入
+        channel.runPendingTasks();
+        for (int i = 0; i < 2; i++) {
+            TextWebSocketFrame frame = channel.readOutbound();
+            assertTrue(frame.text().contains("\"content\":\"hi\""));
+            frame.release();
+        }
+        assertNull(channel.readOutbound());
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.service.serviceImpl;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.example.cluster.ClusterRouter;
+import org.example.entity.dto.ChatMessage;
+import org.example.entity.dto.MessageType;
+import org.example.netty.session.SessionRegistry;
+import org.example.service.InboxService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DeliveryServiceImplTest {
+
+    private DeliveryServiceImpl delivery;
+
+    private InboxService inbox;
+
+    private ClusterRouter router;
+
+    private SessionRegistry sessions;
+
+    private final StringRedisTemplate template = mock(StringRedisTemplate.class);
+
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        inbox = mock(InboxService.class);
+        router = mock(ClusterRouter.class);
+        sessions = new SessionRegistry();
+        channel = new EmbeddedChannel();
+        sessions.register(2, channel);
+        delivery = new DeliveryServiceImpl();
+        delivery.windowSize = 2;
+        delivery.seqBlockSize = 100;
+        delivery.seqCacheSize = 100;
+        delivery.receiptIntervalMillis = 60_000;
+        ReflectionTestUtils.setField(delivery, "inbox", inbox);
+        ReflectionTestUtils.setField(delivery, "router", router);
+        ReflectionTestUtils.setField(delivery, "sessions", sessions);
+        ReflectionTestUtils.setField(delivery, "template", template);
+        delivery.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        delivery.stop();
+    }
+
+    @Test
+    void evictsOldestAndMovesUnackedToInboxOnDisconnect() {
+        delivery.track(2, message(10, 1, 1));
+        delivery.track(2, message(11, 1, 2));
+        // 多个连接重复写出同一条消息只记录一次
+        delivery.track(2, message(11, 1, 2));
+        delivery.track(2, message(12, 1, 3));
+        verify(inbox).push(eq(2), argThat(message -> message.getMessageId() == 10));
+
+        delivery.acknowledge(2, 1, 2);
+        delivery.disconnected(2);
+
+        ArgumentCaptor<ChatMessage> pushed = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(inbox, times(2)).push(eq(2), pushed.capture());
+        assertEquals(List.of(10L, 12L), pushed.getAllValues().stream().map(ChatMessage::getMessageId).toList());
+    }
+
+    @Test
+    void trackAfterLastSessionIsGoneLeavesNoWindow() {
+        sessions.unregister(channel);
+        delivery.disconnected(2);
+        // 断开清理之后才到达的写出直接进入收件箱，不会新建一个无人清理的窗口
+        delivery.track(2, message(10, 1, 1));
+        verify(inbox).push(eq(2), argThat(message -> message.getMessageId() == 10));
+
+        delivery.disconnected(2);
+        verify(inbox, times(1)).push(anyInt(), any());
+    }
+
+    @Test
+    void coalescesReceiptsPerConversation() {
+        delivery.windowSize = 16;
+        for (long seq = 3; seq <= 5; seq++) {
+            delivery.track(2, message(seq, 1, seq));
+        }
+        delivery.acknowledge(2, 1, 3);
+        delivery.acknowledge(2, 1, 5);
+        delivery.acknowledge(2, 1, 4);
+        delivery.read(2, 1, 4);
+        ReflectionTestUtils.invokeMethod(delivery, "flush");
+
+        ArgumentCaptor<ChatMessage> sent = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(router, times(2)).sendToUser(eq(1), sent.capture());
+        for (ChatMessage receipt : sent.getAllValues()) {
+            assertEquals(MessageType.RECEIPT, receipt.getType());
+            assertEquals(2, receipt.getFromUserId());
+            assertEquals("delivered".equals(receipt.getContent()) ? 5L : 4L, receipt.getConversationSeq());
+        }
+        ReflectionTestUtils.invokeMethod(delivery, "flush");
+        verify(router, times(2)).sendToUser(anyInt(), any());
+    }
+
+    @Test
+    void receiptsOnlyCoverMessagesActuallyDelivered() {
+        delivery.track(2, message(10, 1, 3));
+        // 没有写给用户 2 的消息，确认和已读都不产生回执
+        delivery.acknowledge(2, 7, 100);
+        delivery.read(2, 7, 100);
+        // 确认的序号超过实际送达的消息时，回执只到实际移出窗口的序号，已读也不超过它
+        delivery.acknowledge(2, 1, 100);
+        delivery.read(2, 1, 100);
+        ReflectionTestUtils.invokeMethod(delivery, "flush");
+
+        ArgumentCaptor<ChatMessage> sent = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(router, times(2)).sendToUser(eq(1), sent.capture());
+        assertEquals(List.of(3L, 3L), sent.getAllValues().stream().map(ChatMessage::getConversationSeq).toList());
+        verify(router, never()).sendToUser(eq(7), any());
+    }
+
+    @Test
+    void fallsBackToLocalSequenceAndResyncs() {
+        when(template.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(7L);
+        assertEquals(7L, delivery.nextSeq(5));
+
+        // Redis 不可用时在本地继续分配，消息不会因此被拒绝
+        when(template.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new IllegalStateException("redis down"));
+        assertEquals(8L, delivery.nextSeq(5));
+        assertEquals(9L, delivery.nextSeq(5));
+
+        // 恢复后带上本地已分配的最大序号，计数器落后时由脚本抬高
+        reset(template);
+        when(template.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(10L);
+        assertEquals(10L, delivery.nextSeq(5));
+        verify(template).execute(any(RedisScript.class), eq(List.of("chat:conversation:seq:5")), eq("1"), eq("9"));
+    }
+
+    @Test
+    void allocatesBroadcastSequencesInBlocks() {
+        when(template.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(100L, 200L);
+        for (long seq = 1; seq <= 101; seq++) {
+            assertEquals(seq <= 100 ? seq : 101, delivery.nextSeq(0));
+        }
+        verify(template, times(2)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    private static ChatMessage message(long messageId, int from, long conversationSeq) {
+        return new ChatMessage()
+                .setType(MessageType.PRIVATE)
+                .setMessageId(messageId)
+                .setFromUserId(from)
+                .setConversationSeq(conversationSeq)
+                .setContent("content " + messageId);
+    }
+}
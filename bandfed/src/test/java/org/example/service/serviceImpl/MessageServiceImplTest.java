@@ -0,0 +1,124 @@
+package org.example.service.serviceImpl;
+
+import org.example.entity.dto.Message;
+import org.example.journal.MessageJournal;
+import org.example.mapper.MessageMapper;
+import org.example.utils.Const;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class MessageServiceImplTest {
+
+    private final MessageServiceImpl service = new MessageServiceImpl();
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        service.stop();
+    }
+
+    @Test
+    void checkpointNeverPassesAFailedBatch() throws InterruptedException {
+        MessageJournal journal = mock(MessageJournal.class);
+        when(journal.isEnabled()).thenReturn(true);
+        when(journal.append(any())).thenAnswer(invocation -> invocation.<Message>getArgument(0).getId() * 10);
+        // commit 是 synchronized 方法，带超时的 verify 会一直持有锁，改为记录后轮询
+        List<Long> commits = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> commits.add(invocation.getArgument(0))).when(journal).commit(anyLong());
+        // 消息 2 所在的批次一直写入失败，直到放开
+        AtomicBoolean failing = new AtomicBoolean(true);
+        MessageMapper mapper = mock(MessageMapper.class);
+        when(mapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(0);
+            if (failing.get() && messages.stream().anyMatch(message -> message.getId() == 2)) {
+                throw new IllegalStateException("database down");
+            }
+            return messages.size();
+        });
+        ReflectionTestUtils.setField(service, "queueCapacity", 16);
+        ReflectionTestUtils.setField(service, "batchSize", 1);
+        ReflectionTestUtils.setField(service, "flushIntervalMillis", 10L);
+        ReflectionTestUtils.setField(service, "historyCacheSize", 50);
+        ReflectionTestUtils.setField(service, "journal", journal);
+        ReflectionTestUtils.setField(service, "template", mock(StringRedisTemplate.class));
+        ReflectionTestUtils.setField(service, "baseMapper", mapper);
+        service.start();
+
+        for (long id = 1; id <= 3; id++) {
+            assertTrue(service.enqueue(new Message(id, Message.conversationId(1, 2), id, 1, 2, "private", "m" + id,
+                    LocalDateTime.now())));
+        }
+        // 消息 3 已写入，但消息 2 还没有，checkpoint 不能越过消息 2
+        verify(mapper, timeout(2000)).insertBatch(argThat(messages -> messages.getFirst().getId() == 3));
+        assertEquals(List.of(10L), commits);
+
+        failing.set(false);
+        await(() -> commits.contains(20L));
+        assertEquals(List.of(10L, 20L), commits);
+    }
+
+    @Test
+    void historyCacheSkipsConversationsWithParkedMessages() throws InterruptedException {
+        MessageJournal journal = mock(MessageJournal.class);
+        // 消息 2 所在的批次一直写入失败，直到放开
+        AtomicBoolean failing = new AtomicBoolean(true);
+        AtomicBoolean persisted = new AtomicBoolean();
+        MessageMapper mapper = mock(MessageMapper.class);
+        when(mapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(0);
+            if (messages.stream().anyMatch(message -> message.getId() == 2)) {
+                if (failing.get()) throw new IllegalStateException("database down");
+                persisted.set(true);
+            }
+            return messages.size();
+        });
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        ReflectionTestUtils.setField(service, "queueCapacity", 16);
+        ReflectionTestUtils.setField(service, "batchSize", 1);
+        ReflectionTestUtils.setField(service, "flushIntervalMillis", 10L);
+        ReflectionTestUtils.setField(service, "historyCacheSize", 50);
+        ReflectionTestUtils.setField(service, "journal", journal);
+        ReflectionTestUtils.setField(service, "template", template);
+        ReflectionTestUtils.setField(service, "baseMapper", mapper);
+        service.start();
+
+        long conversation = Message.conversationId(1, 2);
+        for (long id = 1; id <= 3; id++) {
+            assertTrue(service.enqueue(new Message(id, conversation, id, 1, 2, "private", "m" + id,
+                    LocalDateTime.now())));
+        }
+        verify(mapper, timeout(2000)).insertBatch(argThat(messages -> messages.getFirst().getId() == 3));
+        // 消息 2 暂存时删除该会话的缓存，之后写入的消息 3 不再进入缓存
+        verify(template).delete(List.of(Const.HISTORY + conversation));
+        verify(template, times(1)).executePipelined(any(SessionCallback.class));
+
+        // 消息 2 补写成功后缓存仍保持为空，之后的新消息重新开始缓存
+        failing.set(false);
+        await(persisted::get);
+        verify(template, times(1)).executePipelined(any(SessionCallback.class));
+        assertTrue(service.enqueue(new Message(4L, conversation, 4L, 1, 2, "private", "m4", LocalDateTime.now())));
+        verify(template, timeout(2000).times(2)).executePipelined(any(SessionCallback.class));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(20);
+        }
+    }
+}